@@ -24,6 +24,8 @@
 
 package org.walog;
 
+import org.walog.util.MpscRingQueue.WaitStrategy;
+
 import static java.lang.Integer.getInteger;
 
 public class AppendOptions {
@@ -35,11 +37,40 @@ public class AppendOptions {
     public static int FLUSH_PERIOD   = getInteger("org.walog.append.flushPeriod", 100);
     public static int FLUSH_UNLOCK   = getInteger("org.walog.append.flushUnlock", 1);
     public static int ASYNC_MODE     = getInteger("org.walog.append.asyncMode", 1);
+    public static int DURABLE        = getInteger("org.walog.append.durable", 0);
+    public static String DURABILITY = System.getProperty("org.walog.append.durability", "os_write");
+    public static int RING_QUEUE     = getInteger("org.walog.append.ringQueue", 0);
+    public static int PREALLOCATE    = getInteger("org.walog.append.preallocate", 0);
+    public static String WAIT_STRATEGY = System.getProperty("org.walog.append.waitStrategy", "park");
+    public static String CHECKSUM    = System.getProperty("org.walog.append.checksum", "fletcher32");
+    public static int COMPRESS_LEVEL     = getInteger("org.walog.append.compressLevel", 0);
+    public static int BATCH_FRAME    = getInteger("org.walog.append.batchFrame", 0);
+    public static int FRAME_MIN_BATCH = getInteger("org.walog.append.frameMinBatch", 4);
+    public static int MMAP           = getInteger("org.walog.append.mmap", 0);
+    public static int COMBINE        = getInteger("org.walog.append.combine", 0);
+    public static int TAIL_STATE     = getInteger("org.walog.append.tailState", 0);
+    public static int ADAPTIVE_BATCH = getInteger("org.walog.append.adaptiveBatch", 0);
+    public static int LINGER         = getInteger("org.walog.append.linger", 50);
+    public static int SYNC_FLUSHER   = getInteger("org.walog.append.syncFlusher", 0);
 
     private boolean flushUnlock = FLUSH_UNLOCK == 1;
     private int asyncMode = ASYNC_MODE;
     private int queueSize = QUEUE_SIZE;
     private int batchSize = BATCH_SIZE;
+    private Durability durability = defaultDurability();
+    private boolean ringQueue = RING_QUEUE == 1;
+    private WaitStrategy waitStrategy = WaitStrategy.parse(WAIT_STRATEGY);
+    private boolean preallocate = PREALLOCATE == 1;
+    private Checksum checksum = Checksum.parse(CHECKSUM);
+    private int compressLevel = COMPRESS_LEVEL;
+    private boolean batchFrame = BATCH_FRAME == 1;
+    private int frameMinBatch = FRAME_MIN_BATCH;
+    private boolean mmap = MMAP == 1;
+    private boolean combine = COMBINE == 1;
+    private boolean tailState = TAIL_STATE == 1;
+    private boolean adaptiveBatch = ADAPTIVE_BATCH == 1;
+    private int linger = LINGER;
+    private boolean syncFlusher = SYNC_FLUSHER == 1;
 
     private AppendOptions() {
 
@@ -61,6 +92,162 @@ public class AppendOptions {
         return batchSize;
     }
 
+    /** Durable append: append returns only after the wal synced to storage.
+     * The appender syncs once for all durable wals in a batch.
+     *
+     * @return true if durable append mode
+     */
+    public boolean isDurable() {
+        return durability.isSynced();
+    }
+
+    /** The default durability level of the appends that don't specify one.
+     *
+     * @return the default durability
+     */
+    public Durability getDurability() {
+        return durability;
+    }
+
+    public static Durability defaultDurability() {
+        if (DURABLE == 1) {
+            return Durability.FDATASYNC;
+        } else {
+            return Durability.parse(DURABILITY);
+        }
+    }
+
+    /** Use the lock-free ring queue instead of the array blocking queue
+     * as the async append queue.
+     *
+     * @return true if ring queue used
+     */
+    public boolean isRingQueue() {
+        return ringQueue;
+    }
+
+    /** The wait strategy of the ring queue: spin, yield or park.
+     *
+     * @return the ring queue wait strategy
+     */
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    /** Preallocate the next wal file in background, so that rolling the append
+     * file doesn't create and grow a new file. The preallocated tail is kept when
+     * the append file lock released, and truncated when the waler closed.
+     *
+     * @return true if preallocate wal files
+     */
+    public boolean isPreallocate() {
+        return preallocate;
+    }
+
+    /** The checksum of the appended wals. CRC32C is faster than the default
+     * Fletcher32 especially for big wals, but the wal files written in CRC32C
+     * can't be read by the versions before it.
+     *
+     * @return the append checksum
+     */
+    public Checksum getChecksum() {
+        return checksum;
+    }
+
+    /** Compress the successive wals of an append batch into a frame in this deflate
+     * level, and each wal in the frame keeps its own lsn. The replication of the
+     * frame is supported, but the wal files with frames can't be read by the
+     * versions before it.
+     *
+     * @return the deflate level 1-9, or 0 if not compress
+     */
+    public int getCompressLevel() {
+        return compressLevel;
+    }
+
+    /** Append the successive wals of an append batch into an uncompressed frame
+     * if not compress: the frame has one checksum for all wals in it, and each
+     * wal takes 1 byte instead of 8 bytes besides its length and data. The wal
+     * files with frames can't be read by the versions before it.
+     *
+     * @return true if append batch frames
+     */
+    public boolean isBatchFrame() {
+        return batchFrame;
+    }
+
+    /** The minimum wals of a frame: the smaller batch is appended without frame.
+     *
+     * @return the minimum wals of a frame
+     */
+    public int getFrameMinBatch() {
+        return frameMinBatch;
+    }
+
+    /** Append wals into the memory-mapped append file: the wals are encoded into
+     * the mapping directly without the write syscalls, and the sync forces the
+     * mapping. The mapped append file is sized to the roll size as preallocated.
+     *
+     * @return true if memory-mapped append
+     */
+    public boolean isMmap() {
+        return mmap;
+    }
+
+    /** Flat combining in sync mode: the appending thread that acquires the append lock
+     * appends the wals published by the other waiting threads in batches, then hands
+     * each its result. This option is ignored in async mode.
+     *
+     * @return true if combining appends in sync mode
+     */
+    public boolean isCombine() {
+        return combine;
+    }
+
+    /** Keep the tail state of the log in a control file when the append file lock
+     * released, so that the next lock holder resumes from the last committed lsn
+     * instead of recovering the last file. The full recovery is still done if the
+     * tail state disagrees with the last file, e.g. after a crash. Off by default,
+     * for it adds the control file 'append.state' into the wal directory.
+     *
+     * @return true if resume from the tail state
+     */
+    public boolean isTailState() {
+        return tailState;
+    }
+
+    /** The timer flush in sync mode: the appender thread, otherwise idle in sync mode,
+     * flushes the appended wals when the flush period expired even if no more appends,
+     * and releases the append file lock in flushUnlock mode. The async appender always
+     * flushes on the timer. Off by default, so that a sync mode waler, e.g. the slave
+     * waler, flushes and releases the file lock only in the appending threads.
+     *
+     * @return true if the appender thread flushes periodically in sync mode
+     */
+    public boolean isSyncFlusher() {
+        return syncFlusher;
+    }
+
+    /** Adaptive batch in async mode: the batch limit starts at the batch size, grows up
+     * to 16 times of it when the batches are cut by the limit under bursts, and shrinks
+     * back when the queue is shallow. The appender also lingers for more wals when the
+     * queue is empty and the commit of the batch is costly, e.g. synced.
+     *
+     * @return true if the batch size adaptive
+     */
+    public boolean isAdaptiveBatch() {
+        return adaptiveBatch;
+    }
+
+    /** The max time of lingering for more wals in adaptive batch mode, and the linger
+     * is also limited by the half of the average commit time.
+     *
+     * @return the linger time in microseconds, or 0 if not linger
+     */
+    public int getLinger() {
+        return linger;
+    }
+
     public static Builder builder() {
         return new Builder();
     }
@@ -89,12 +276,119 @@ public class AppendOptions {
             return this;
         }
 
+        public Builder durable(boolean durable) {
+            this.source.durability = durable? Durability.FDATASYNC: Durability.OS_WRITE;
+            return this;
+        }
+
+        public Builder durability(Durability durability) {
+            if (durability == null) {
+                throw new NullPointerException("durability");
+            }
+            this.source.durability = durability;
+            return this;
+        }
+
+        public Builder ringQueue(boolean ringQueue) {
+            this.source.ringQueue = ringQueue;
+            return this;
+        }
+
+        public Builder waitStrategy(WaitStrategy waitStrategy) {
+            if (waitStrategy == null) {
+                throw new NullPointerException("waitStrategy");
+            }
+            this.source.waitStrategy = waitStrategy;
+            return this;
+        }
+
+        public Builder preallocate(boolean preallocate) {
+            this.source.preallocate = preallocate;
+            return this;
+        }
+
+        public Builder checksum(Checksum checksum) {
+            if (checksum == null) {
+                throw new NullPointerException("checksum");
+            }
+            this.source.checksum = checksum;
+            return this;
+        }
+
+        public Builder compressLevel(int compressLevel) {
+            if (compressLevel < 0 || compressLevel > 9) {
+                throw new IllegalArgumentException("compressLevel: " + compressLevel);
+            }
+            this.source.compressLevel = compressLevel;
+            return this;
+        }
+
+        public Builder batchFrame(boolean batchFrame) {
+            this.source.batchFrame = batchFrame;
+            return this;
+        }
+
+        public Builder frameMinBatch(int frameMinBatch) {
+            if (frameMinBatch < 2) {
+                throw new IllegalArgumentException("frameMinBatch: " + frameMinBatch);
+            }
+            this.source.frameMinBatch = frameMinBatch;
+            return this;
+        }
+
+        public Builder mmap(boolean mmap) {
+            this.source.mmap = mmap;
+            return this;
+        }
+
+        public Builder combine(boolean combine) {
+            this.source.combine = combine;
+            return this;
+        }
+
+        public Builder tailState(boolean tailState) {
+            this.source.tailState = tailState;
+            return this;
+        }
+
+        public Builder adaptiveBatch(boolean adaptiveBatch) {
+            this.source.adaptiveBatch = adaptiveBatch;
+            return this;
+        }
+
+        public Builder linger(int linger) {
+            if (linger < 0) {
+                throw new IllegalArgumentException("linger: " + linger);
+            }
+            this.source.linger = linger;
+            return this;
+        }
+
+        public Builder syncFlusher(boolean syncFlusher) {
+            this.source.syncFlusher = syncFlusher;
+            return this;
+        }
+
         public AppendOptions build() {
             AppendOptions options = new AppendOptions();
             options.flushUnlock = this.source.flushUnlock;
             options.asyncMode = this.source.asyncMode;
             options.queueSize = this.source.queueSize;
             options.batchSize = this.source.batchSize;
+            options.durability = this.source.durability;
+            options.ringQueue = this.source.ringQueue;
+            options.waitStrategy = this.source.waitStrategy;
+            options.preallocate = this.source.preallocate;
+            options.checksum = this.source.checksum;
+            options.compressLevel = this.source.compressLevel;
+            options.batchFrame = this.source.batchFrame;
+            options.frameMinBatch = this.source.frameMinBatch;
+            options.mmap = this.source.mmap;
+            options.combine = this.source.combine;
+            options.tailState = this.source.tailState;
+            options.adaptiveBatch = this.source.adaptiveBatch;
+            options.linger = this.source.linger;
+            options.syncFlusher = this.source.syncFlusher;
             return options;
         }
     }
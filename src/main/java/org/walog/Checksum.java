@@ -0,0 +1,88 @@
+/**
+ * The MIT License (MIT)
+ * <p>
+ * Copyright (c) 2020 little-pan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.walog;
+
+import org.walog.util.IoUtils;
+
+import java.nio.ByteBuffer;
+
+/** The checksum algorithm of the wal. The version of the algorithm is stored in
+ * each wal, so that the wal files in different algorithms are all readable.
+ *
+ * @author little-pan
+ * @since 2026-10-16
+ */
+public enum Checksum {
+
+    /** The Fletcher-32 checksum: version 0, the format of the wals before the
+     * checksum selectable */
+    FLETCHER32,
+    /** The CRC-32C checksum: version 1, hardware accelerated on Java 9+ */
+    CRC32C;
+
+    static final Checksum[] VERSIONS = values();
+
+    public int getVersion() {
+        return ordinal();
+    }
+
+    public int compute(byte[] bytes) {
+        return compute(bytes, 0, bytes.length);
+    }
+
+    public int compute(byte[] bytes, int offset, int length) {
+        if (this == CRC32C) {
+            return IoUtils.getCrc32c(bytes, offset, length);
+        } else {
+            return IoUtils.getFletcher32(bytes, offset, length);
+        }
+    }
+
+    /** Compute the checksum of the remaining bytes of the buffer, without changing
+     * the buffer position.
+     *
+     * @param buffer the heap or direct buffer
+     * @return the checksum
+     */
+    public int compute(ByteBuffer buffer) {
+        if (this == CRC32C) {
+            return IoUtils.getCrc32c(buffer);
+        } else {
+            return IoUtils.getFletcher32(buffer);
+        }
+    }
+
+    public static Checksum valueOf(int version) throws IllegalArgumentException {
+        if (version < 0 || version >= VERSIONS.length) {
+            throw new IllegalArgumentException("Unknown checksum version: " + version);
+        }
+        return VERSIONS[version];
+    }
+
+    public static Checksum parse(String name) throws IllegalArgumentException {
+        return valueOf(name.toUpperCase());
+    }
+
+}
@@ -0,0 +1,52 @@
+/**
+ * The MIT License (MIT)
+ * <p>
+ * Copyright (c) 2020 little-pan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.walog;
+
+/** The durability level of an append. The appender runs the cheapest sync that
+ * satisfies the strongest level in each append batch.
+ *
+ * @author little-pan
+ * @since 2026-10-16
+ */
+public enum Durability {
+
+    /** Written to the OS with its batch, and the periodic auto flush doesn't sync for it */
+    NONE,
+    /** Written to the OS with its batch, and synced by the periodic auto flush */
+    OS_WRITE,
+    /** Completed after the file data synced: fdatasync */
+    FDATASYNC,
+    /** Completed after the file data and metadata synced: fsync */
+    FSYNC;
+
+    public boolean isSynced() {
+        return (this.compareTo(FDATASYNC) >= 0);
+    }
+
+    public static Durability parse(String name) throws IllegalArgumentException {
+        return valueOf(name.toUpperCase());
+    }
+
+}
@@ -0,0 +1,844 @@
+/**
+ * The MIT License (MIT)
+ * <p>
+ * Copyright (c) 2020 little-pan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.walog;
+
+import org.walog.internal.NioWaler;
+import org.walog.util.IoUtils;
+import org.walog.util.WalFileUtils;
+
+import java.io.File;
+import java.io.Serializable;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** The partitioned waler that spreads appends across N partitions, each with its own
+ * directory, appender, wal files and lsn space, so that appends scale across cores
+ * and devices.
+ *
+ * <p>The partition index is kept in the bits 56-62 of the lsn, and the lowest 56 bits
+ * is the lsn in the partition. Appends are routed by the key given, or round-robin.
+ * next() stays in the partition of the wal, and the iterator iterates wals ordered by
+ * partition then lsn. The timeout iterator merges the heads of the partitions in turn,
+ * so that it follows the appends to all partitions.
+ * </p>
+ *
+ * @author little-pan
+ * @since 2026-10-16
+ */
+public class PartitionedWaler implements Waler {
+
+    public static final int PARTITION_SHIFT = 56;
+    public static final int MAX_PARTITIONS  = 1 << (63 - PARTITION_SHIFT);
+    public static final long LSN_MASK = (1L << PARTITION_SHIFT) - 1L;
+    static final long POLL_PERIOD = 100L;
+
+    protected final File[] dirs;
+    protected final NioWaler[] partitions;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public PartitionedWaler(File dir, int partitions, AppendOptions options) {
+        this(partitionDirs(dir, partitions), options, 0, false);
+    }
+
+    public PartitionedWaler(File[] dirs, AppendOptions options, int fetchSize, boolean fetchLast) {
+        final int n = dirs.length;
+        if (n < 1 || n > MAX_PARTITIONS) {
+            throw new IllegalArgumentException("partitions: " + n);
+        }
+
+        this.dirs = dirs;
+        this.partitions = new NioWaler[n];
+        for (int i = 0; i < n; ++i) {
+            this.partitions[i] = new NioWaler(dirs[i], options, fetchSize, fetchLast);
+        }
+    }
+
+    static File[] partitionDirs(File dir, int partitions) {
+        if (partitions < 1 || partitions > MAX_PARTITIONS) {
+            throw new IllegalArgumentException("partitions: " + partitions);
+        }
+        final File[] dirs = new File[partitions];
+        for (int i = 0; i < partitions; ++i) {
+            dirs[i] = new File(dir, "partition-" + i);
+        }
+        return dirs;
+    }
+
+    public static long lsn(int partition, long lsn) throws WalException {
+        if (lsn > LSN_MASK) {
+            throw new WalException("Partition lsn full: " + lsn);
+        }
+        return ((long)partition << PARTITION_SHIFT) | lsn;
+    }
+
+    public static int partition(long lsn) {
+        return (int)(lsn >>> PARTITION_SHIFT);
+    }
+
+    public static long partitionLsn(long lsn) {
+        return (lsn & LSN_MASK);
+    }
+
+    public int getPartitions() {
+        return this.partitions.length;
+    }
+
+    public Waler getPartition(int partition) {
+        return this.partitions[partition];
+    }
+
+    protected int route(Object key) {
+        final int n = this.partitions.length;
+        if (key == null) {
+            return ((this.next.getAndIncrement() & 0x7fffffff) % n);
+        } else {
+            return ((key.hashCode() & 0x7fffffff) % n);
+        }
+    }
+
+    protected Waler partitionOf(long lsn) throws IllegalArgumentException {
+        if (lsn < 0L) {
+            throw new IllegalArgumentException("lsn must be bigger than or equals 0: " + lsn);
+        }
+        final int i = partition(lsn);
+        if (i >= this.partitions.length) {
+            throw new IllegalArgumentException("No partition of lsn: " + lsn);
+        }
+        return this.partitions[i];
+    }
+
+    protected Wal wrap(int partition, Wal wal) {
+        if (wal == null) {
+            return null;
+        }
+        return new PartitionWal(partition, wal);
+    }
+
+    @Override
+    public void open() throws WalException {
+        boolean failed = true;
+        try {
+            for (File dir : this.dirs) {
+                final File parent = dir.getAbsoluteFile().getParentFile();
+                if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+                    throw new IOWalException("Can't create walog directory: " + parent);
+                }
+            }
+            for (Waler p : this.partitions) {
+                p.open();
+            }
+            failed = false;
+        } finally {
+            if (failed) {
+                close();
+            }
+        }
+    }
+
+    @Override
+    public Wal append(byte[] log) throws WalException {
+        return append(null, log);
+    }
+
+    @Override
+    public Wal append(byte[] log, int offset, int length) throws WalException {
+        final int i = route(null);
+        return wrap(i, this.partitions[i].append(log, offset, length));
+    }
+
+    @Override
+    public Wal append(String log) throws WalException {
+        return append(null, log);
+    }
+
+    @Override
+    public Wal append(byte[] log, Durability durability) throws WalException {
+        final int i = route(null);
+        return wrap(i, this.partitions[i].append(log, durability));
+    }
+
+    @Override
+    public Wal append(String log, Durability durability) throws WalException {
+        final int i = route(null);
+        return wrap(i, this.partitions[i].append(log, durability));
+    }
+
+    /** Append the log payload to the partition of the key, so that the logs of
+     * the same key are kept in order.
+     *
+     * @param key the routing key, or null for round-robin
+     * @param log the log payload
+     * @return appended log
+     * @throws WalException if IO error, appending timeout, or interrupted
+     */
+    public Wal append(Object key, byte[] log) throws WalException {
+        final int i = route(key);
+        return wrap(i, this.partitions[i].append(log));
+    }
+
+    public Wal append(Object key, String log) throws WalException {
+        final int i = route(key);
+        return wrap(i, this.partitions[i].append(log));
+    }
+
+    @Override
+    public long append(ByteBuffer log) throws WalException {
+        final int i = route(null);
+        return lsn(i, this.partitions[i].append(log));
+    }
+
+    @Override
+    public long append(InputStream log, long length) throws WalException, IllegalArgumentException {
+        final int i = route(null);
+        return lsn(i, this.partitions[i].append(log, length));
+    }
+
+    @Override
+    public List<Wal> append(List<byte[]> logs) throws WalException {
+        return append((Object)null, logs);
+    }
+
+    @Override
+    public List<Wal> append(byte[][] logs) throws WalException {
+        final int i = route(null);
+        return wrap(i, this.partitions[i].append(logs));
+    }
+
+    /** Append the log payloads to the partition of the key as a group.
+     *
+     * @param key the routing key, or null for round-robin
+     * @param logs the log payloads
+     * @return the appended logs in the order of the payloads
+     * @throws WalException if IO error, appending timeout, or interrupted
+     */
+    public List<Wal> append(Object key, List<byte[]> logs) throws WalException {
+        final int i = route(key);
+        return wrap(i, this.partitions[i].append(logs));
+    }
+
+    protected List<Wal> wrap(int partition, List<Wal> wals) {
+        final List<Wal> result = new ArrayList<>(wals.size());
+        for (Wal wal : wals) {
+            result.add(wrap(partition, wal));
+        }
+        return result;
+    }
+
+    @Override
+    public void appendAsync(byte[] log, WalCallback callback) {
+        final int i = route(null);
+        this.partitions[i].appendAsync(log, wrap(i, callback));
+    }
+
+    @Override
+    public void appendAsync(String log, WalCallback callback) {
+        final int i = route(null);
+        this.partitions[i].appendAsync(log, wrap(i, callback));
+    }
+
+    protected WalCallback wrap(final int partition, final WalCallback callback) {
+        if (callback == null) {
+            throw new NullPointerException("callback");
+        }
+        return new WalCallback() {
+            @Override
+            public void onComplete(Wal wal, WalException cause) {
+                callback.onComplete(wrap(partition, wal), cause);
+            }
+        };
+    }
+
+    /** Get the first log ordered by partition then lsn.
+     *
+     * @return the first log, or null if no any log
+     * @throws WalException if IO error
+     */
+    @Override
+    public Wal first() throws WalException {
+        for (int i = 0; i < this.partitions.length; ++i) {
+            final Wal wal = this.partitions[i].first();
+            if (wal != null) {
+                return wrap(i, wal);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Wal first(long timeout) throws WalException {
+        Wal wal = first();
+        if (wal != null || timeout < 0L) {
+            return wal;
+        }
+
+        // Wait on each partition in turn
+        final int n = this.partitions.length;
+        final long slice = Math.max(1L, POLL_PERIOD / n);
+        long remain = timeout;
+        for (int i = 0; ; i = (i + 1) % n) {
+            final long t = (timeout == 0L? slice: Math.min(slice, remain));
+            final long start = System.currentTimeMillis();
+            try {
+                wal = this.partitions[i].first(t);
+                if (wal != null) {
+                    return wrap(i, wal);
+                }
+            } catch (TimeoutWalException e) {
+                // Try the next partition
+            }
+            if (timeout > 0L) {
+                remain -= System.currentTimeMillis() - start;
+                if (remain <= 0L) {
+                    throw new TimeoutWalException("Fetch the first wal timeout");
+                }
+            }
+        }
+    }
+
+    @Override
+    public Wal get(long lsn) throws WalException, IllegalArgumentException {
+        final Waler p = partitionOf(lsn);
+        return wrap(partition(lsn), p.get(partitionLsn(lsn)));
+    }
+
+    @Override
+    public InputStream openStream(long lsn) throws WalException, IllegalArgumentException {
+        final Waler p = partitionOf(lsn);
+        return p.openStream(partitionLsn(lsn));
+    }
+
+    /** Get the next wal in the partition of the specified wal.
+     *
+     * @param wal the specified wal
+     * @return the next wal, or null if not found
+     * @throws WalException if IO error
+     * @throws IllegalArgumentException if the arg wal lsn is less than 0
+     */
+    @Override
+    public Wal next(Wal wal) throws WalException, IllegalArgumentException {
+        return next(wal, -1L);
+    }
+
+    @Override
+    public Wal next(Wal wal, long timeout) throws WalException, IllegalArgumentException {
+        final long lsn = wal.getLsn();
+        final Waler p = partitionOf(lsn);
+        final Wal w;
+        if (wal instanceof PartitionWal) {
+            w = ((PartitionWal)wal).wal;
+        } else {
+            w = p.get(partitionLsn(lsn));
+            if (w == null) {
+                return null;
+            }
+        }
+        return wrap(partition(lsn), p.next(w, timeout));
+    }
+
+    @Override
+    public WalIterator iterator() {
+        return new PartitionedIterator(this, 0, null);
+    }
+
+    /** Iterate wals from the given lsn, ordered by partition then lsn: the following
+     * partitions are iterated from their first wals.
+     *
+     * @param lsn the start lsn of iterator
+     * @return wal iterator
+     * @throws IllegalArgumentException if the arg wal lsn is less than 0
+     */
+    @Override
+    public WalIterator iterator(long lsn) throws IllegalArgumentException {
+        partitionOf(lsn);
+        final int i = partition(lsn);
+        final WalIterator it = this.partitions[i].iterator(partitionLsn(lsn));
+        return new PartitionedIterator(this, i, it);
+    }
+
+    /** Iterate wals from the given lsn in its partition, and from the first wals in the
+     * other partitions, merging the heads of all partitions in turn, and wait for the
+     * wals appended to any partition.
+     *
+     * @param lsn the start lsn of iterator
+     * @param timeout the wait timeout millisecond
+     * @return the merged wal iterator
+     * @throws IllegalArgumentException if the arg wal lsn is less than 0
+     */
+    @Override
+    public WalIterator iterator(long lsn, long timeout) throws IllegalArgumentException {
+        partitionOf(lsn);
+        final long[] lsns = new long[this.partitions.length];
+        Arrays.fill(lsns, -1L);
+        lsns[partition(lsn)] = lsn;
+        return iterator(lsns, timeout);
+    }
+
+    /** Iterate wals from the given lsn of each partition, merging the heads of all
+     * partitions in turn, and wait for the wals appended to any partition.
+     *
+     * @param lsns the start lsn of each partition, or -1 from its first wal
+     * @param timeout the wait timeout millisecond
+     * @return the merged wal iterator
+     * @throws IllegalArgumentException if the lsns not matched the partitions
+     */
+    public WalIterator iterator(long[] lsns, long timeout) throws IllegalArgumentException {
+        final int n = this.partitions.length;
+        if (lsns.length != n) {
+            throw new IllegalArgumentException("lsns length " + lsns.length + ", partitions " + n);
+        }
+        final long[] starts = new long[n];
+        for (int i = 0; i < n; ++i) {
+            final long lsn = lsns[i];
+            if (lsn == -1L) {
+                starts[i] = -1L;
+                continue;
+            }
+            if (partitionOf(lsn) != this.partitions[i]) {
+                throw new IllegalArgumentException("lsn " + lsn + " not in partition " + i);
+            }
+            starts[i] = partitionLsn(lsn);
+        }
+        return new MergedIterator(this, starts, timeout);
+    }
+
+    /** Purge the wal files before the file in its partition, and the filename is
+     * of a partition file lsn, e.g. the next file lsn of a partition wal.
+     *
+     * @param filename the wal filename of the partition file lsn
+     * @return true if purged
+     * @throws WalException if IO error
+     */
+    @Override
+    public boolean purgeTo(String filename) throws WalException {
+        return purgeTo(WalFileUtils.lsn(filename));
+    }
+
+    /** Purge the wal files before the file lsn of each partition.
+     *
+     * @param fileLsns the file lsn of each partition, or -1 if not purge the partition
+     * @return true if purged in all partitions
+     * @throws WalException if IO error
+     * @throws IllegalArgumentException if the lsns not matched the partitions
+     */
+    public boolean purgeTo(long[] fileLsns) throws WalException, IllegalArgumentException {
+        final int n = this.partitions.length;
+        if (fileLsns.length != n) {
+            throw new IllegalArgumentException("fileLsns length " + fileLsns.length + ", partitions " + n);
+        }
+        for (int i = 0; i < n; ++i) {
+            final long lsn = fileLsns[i];
+            if (lsn != -1L && partitionOf(lsn) != this.partitions[i]) {
+                throw new IllegalArgumentException("lsn " + lsn + " not in partition " + i);
+            }
+        }
+        boolean purged = true;
+        for (final long lsn : fileLsns) {
+            if (lsn != -1L) {
+                purged &= purgeTo(lsn);
+            }
+        }
+        return purged;
+    }
+
+    @Override
+    public boolean purgeTo(long fileLsn) throws WalException {
+        return partitionOf(fileLsn).purgeTo(partitionLsn(fileLsn));
+    }
+
+    @Override
+    public boolean clear() throws WalException {
+        boolean cleared = true;
+        for (Waler p : this.partitions) {
+            cleared &= p.clear();
+        }
+        return cleared;
+    }
+
+    @Override
+    public void sync() throws WalException {
+        for (Waler p : this.partitions) {
+            p.sync();
+        }
+    }
+
+    /** The dirty bytes of all partitions.
+     *
+     * @return the bytes appended but not synced yet
+     */
+    public long getDirtyBytes() {
+        long bytes = 0L;
+        for (NioWaler p : this.partitions) {
+            bytes += p.getDirtyBytes();
+        }
+        return bytes;
+    }
+
+    /** The oldest dirty age of all partitions.
+     *
+     * @return the dirty age in milliseconds, or 0 if no dirty wals
+     */
+    public long getDirtyAge() {
+        long age = 0L;
+        for (NioWaler p : this.partitions) {
+            age = Math.max(age, p.getDirtyAge());
+        }
+        return age;
+    }
+
+    /** The file lock waits of all partitions.
+     *
+     * @return the times of waiting for the append file locks
+     */
+    public long getFileLockWaits() {
+        long waits = 0L;
+        for (NioWaler p : this.partitions) {
+            waits += p.getFileLockWaits();
+        }
+        return waits;
+    }
+
+    /** The file lock wait time of all partitions.
+     *
+     * @return the wait time in milliseconds
+     */
+    public long getFileLockWaitTime() {
+        long time = 0L;
+        for (NioWaler p : this.partitions) {
+            time += p.getFileLockWaitTime();
+        }
+        return time;
+    }
+
+    /** The file lock handoffs of all partitions.
+     *
+     * @return the times of the append file locks changed hands
+     */
+    public long getFileLockHandoffs() {
+        long handoffs = 0L;
+        for (NioWaler p : this.partitions) {
+            handoffs += p.getFileLockHandoffs();
+        }
+        return handoffs;
+    }
+
+    /** The append file recoveries of all partitions.
+     *
+     * @return the times of the append files recovered
+     */
+    public long getRecoveries() {
+        long recoveries = 0L;
+        for (NioWaler p : this.partitions) {
+            recoveries += p.getRecoveries();
+        }
+        return recoveries;
+    }
+
+    /** Fetch the last wal ordered by partition then lsn, i.e. the last wal of
+     * the last non-empty partition.
+     *
+     * @return the last wal, or null if not found
+     * @throws WalException if IO error, timeout or interrupted
+     */
+    @Override
+    public Wal last() throws WalException {
+        for (int i = this.partitions.length - 1; i >= 0; --i) {
+            final Wal wal = this.partitions[i].last();
+            if (wal != null) {
+                return wrap(i, wal);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean isOpen() {
+        for (Waler p : this.partitions) {
+            if (!p.isOpen()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        for (Waler p : this.partitions) {
+            IoUtils.close(p);
+        }
+    }
+
+    /** The wal of a partition, whose lsn contains the partition index.
+     */
+    static class PartitionWal implements Wal, Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        final int partition;
+        final Wal wal;
+
+        PartitionWal(int partition, Wal wal) {
+            this.partition = partition;
+            this.wal = wal;
+        }
+
+        @Override
+        public long getLsn() {
+            return lsn(this.partition, this.wal.getLsn());
+        }
+
+        @Override
+        public byte[] getData() {
+            return this.wal.getData();
+        }
+
+        @Override
+        public long nextLsn() throws WalException {
+            return lsn(this.partition, this.wal.nextLsn());
+        }
+
+        @Override
+        public long nextFileLsn() {
+            return lsn(this.partition, this.wal.nextFileLsn());
+        }
+
+        @Override
+        public Wal getLast() {
+            final Wal last = this.wal.getLast();
+            if (last == null) {
+                return null;
+            }
+            return new PartitionWal(this.partition, last);
+        }
+
+        @Override
+        public String toString() {
+            return this.wal.toString();
+        }
+
+    }
+
+    /** Iterate the partitions in turn.
+     */
+    static class PartitionedIterator implements WalIterator {
+
+        protected final PartitionedWaler waler;
+        protected int partition;
+        protected WalIterator current;
+        private boolean open = true;
+
+        PartitionedIterator(PartitionedWaler waler, int partition, WalIterator current) {
+            this.waler = waler;
+            this.partition = partition;
+            this.current = current;
+        }
+
+        @Override
+        public boolean hasNext() throws WalException {
+            if (!this.open) {
+                throw new IllegalStateException("Wal iterator closed");
+            }
+
+            final NioWaler[] partitions = this.waler.partitions;
+            for (;;) {
+                if (this.current == null) {
+                    this.current = partitions[this.partition].iterator();
+                }
+                if (this.current.hasNext()) {
+                    return true;
+                }
+                if (this.partition + 1 >= partitions.length) {
+                    return false;
+                }
+                this.current.close();
+                this.current = null;
+                ++this.partition;
+            }
+        }
+
+        @Override
+        public Wal next() throws WalException {
+            if (this.current == null) {
+                throw new NoSuchElementException();
+            }
+            return new PartitionWal(this.partition, this.current.next());
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("wal iterator read only");
+        }
+
+        @Override
+        public boolean isOpen() {
+            return this.open;
+        }
+
+        @Override
+        public void close() {
+            IoUtils.close(this.current);
+            this.current = null;
+            this.open = false;
+        }
+
+    }
+
+    /** Merge the heads of the partitions: the partitions are polled in turn from the one
+     * after the last wal got, and waited in turn if no wal in any partition, so that
+     * the appends to all partitions are followed.
+     */
+    static class MergedIterator implements WalIterator {
+
+        protected final PartitionedWaler waler;
+        protected final long timeout;
+        // The start lsn in each partition or -1, and the last wal got in each partition
+        protected final long[] starts;
+        protected final Wal[] lasts;
+        protected int turn;
+        private Wal wal;
+        private boolean open = true;
+
+        MergedIterator(PartitionedWaler waler, long[] starts, long timeout) {
+            this.waler = waler;
+            this.starts = starts;
+            this.lasts = new Wal[starts.length];
+            this.timeout = timeout;
+        }
+
+        @Override
+        public boolean hasNext() throws WalException {
+            if (!this.open) {
+                throw new IllegalStateException("Wal iterator closed");
+            }
+            if (this.wal != null) {
+                return true;
+            }
+
+            final int n = this.lasts.length;
+            for (int k = 0; k < n; ++k) {
+                if (poll((this.turn + k) % n, -1L)) {
+                    return true;
+                }
+            }
+            if (this.timeout < 0L) {
+                return false;
+            }
+
+            // Wait on each partition in turn
+            final long slice = Math.max(1L, POLL_PERIOD / n);
+            long remain = this.timeout;
+            for (int i = this.turn; ; i = (i + 1) % n) {
+                final long t = (this.timeout == 0L? slice: Math.min(slice, remain));
+                final long start = System.currentTimeMillis();
+                if (poll(i, t)) {
+                    return true;
+                }
+                if (this.timeout > 0L) {
+                    remain -= System.currentTimeMillis() - start;
+                    if (remain <= 0L) {
+                        throw new TimeoutWalException("Fetch the next wal timeout");
+                    }
+                }
+            }
+        }
+
+        /** Poll the head of the partition.
+         *
+         * @param i the partition index
+         * @param timeout the wait timeout millisecond, or -1 if not wait
+         * @return true if the head got
+         * @throws WalException if IO error or interrupted
+         */
+        protected boolean poll(final int i, final long timeout) throws WalException {
+            final Waler p = this.waler.partitions[i];
+            final Wal last = this.lasts[i];
+            Wal w;
+            try {
+                if (last != null) {
+                    w = p.next(last, timeout);
+                } else if (this.starts[i] != -1L) {
+                    w = p.get(this.starts[i]);
+                    if (w == null && timeout >= 0L) {
+                        // Not appended yet
+                        sleep(timeout);
+                    }
+                } else {
+                    w = p.first(timeout);
+                }
+            } catch (TimeoutWalException e) {
+                return false;
+            }
+            if (w == null) {
+                return false;
+            }
+
+            this.lasts[i] = w;
+            this.wal = new PartitionWal(i, w);
+            this.turn = (i + 1) % this.lasts.length;
+            return true;
+        }
+
+        static void sleep(long millis) throws WalException {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedWalException("Fetch the next wal interrupted", e);
+            }
+        }
+
+        @Override
+        public Wal next() throws WalException {
+            if (this.wal == null && !hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final Wal wal = this.wal;
+            this.wal = null;
+            return wal;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("wal iterator read only");
+        }
+
+        @Override
+        public boolean isOpen() {
+            return this.open;
+        }
+
+        @Override
+        public void close() {
+            this.wal = null;
+            this.open = false;
+        }
+
+    }
+
+}
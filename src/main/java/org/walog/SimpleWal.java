@@ -50,8 +50,11 @@ public class SimpleWal implements Wal, Serializable {
     }
 
     public static byte lengthPrefix(byte[] data) throws IllegalArgumentException {
+        return lengthPrefix(data.length);
+    }
+
+    public static byte lengthPrefix(int length) throws IllegalArgumentException {
         byte pfx;
-        int length = data.length;
 
         if (length >= 1 << 24) {
             throw new IllegalArgumentException("data too long");
@@ -27,6 +27,9 @@ package org.walog;
 import org.walog.internal.NioWaler;
 import org.walog.util.IoUtils;
 
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.atomic.AtomicLong;
 import static java.lang.Integer.*;
@@ -123,6 +126,46 @@ public class SlaveWaler implements Waler {
         throw new WalException("Slave is read only");
     }
 
+    @Override
+    public Wal append(byte[] log, Durability durability) throws WalException {
+        throw new WalException("Slave is read only");
+    }
+
+    @Override
+    public Wal append(String log, Durability durability) throws WalException {
+        throw new WalException("Slave is read only");
+    }
+
+    @Override
+    public long append(ByteBuffer log) throws WalException {
+        throw new WalException("Slave is read only");
+    }
+
+    @Override
+    public long append(InputStream log, long length) throws WalException {
+        throw new WalException("Slave is read only");
+    }
+
+    @Override
+    public List<Wal> append(List<byte[]> logs) throws WalException {
+        throw new WalException("Slave is read only");
+    }
+
+    @Override
+    public List<Wal> append(byte[][] logs) throws WalException {
+        throw new WalException("Slave is read only");
+    }
+
+    @Override
+    public void appendAsync(byte[] log, WalCallback callback) {
+        callback.onComplete(null, new WalException("Slave is read only"));
+    }
+
+    @Override
+    public void appendAsync(String log, WalCallback callback) {
+        callback.onComplete(null, new WalException("Slave is read only"));
+    }
+
     @Override
     public Wal first() throws WalException {
         ensureOpen();
@@ -141,6 +184,12 @@ public class SlaveWaler implements Waler {
         return this.waler.get(lsn);
     }
 
+    @Override
+    public InputStream openStream(long lsn) throws WalException, IllegalArgumentException {
+        ensureOpen();
+        return this.waler.openStream(lsn);
+    }
+
     @Override
     public Wal next(Wal wal) throws WalException, IllegalArgumentException {
         ensureOpen();
@@ -249,7 +298,8 @@ public class SlaveWaler implements Waler {
             if (curr == null) {
                 return -1L;
             } else {
-                return (last.getLsn() - curr.getLsn());
+                // Note: the frame written as a whole, maybe after the last wal fetched
+                return Math.max(0L, last.getLsn() - NioWaler.replicatedLsn(curr));
             }
         }
 
@@ -24,6 +24,10 @@
 
 package org.walog;
 
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
  /** The WAL manager.
  * 
  * @author little-pan
@@ -50,6 +54,68 @@ public interface Waler extends AutoCloseable {
 
     Wal append(String log) throws WalException;
 
+    /**
+     * Append the log payload to the logger with the specified durability level.
+     *
+     * @param log the log payload
+     * @param durability the durability level of this log
+     * @return appended log
+     * @throws WalException if IO error, appending timeout, or interrupted
+     */
+    Wal append(byte[] log, Durability durability) throws WalException;
+
+    Wal append(String log, Durability durability) throws WalException;
+
+    /**
+     * Append the log payload in the buffer to the logger without copying it: the
+     * remaining bytes of the buffer are written directly, and the buffer position
+     * isn't changed. The buffer, heap or direct, must not be modified until this
+     * method returns.
+     *
+     * @param log the log payload buffer
+     * @return the lsn of the appended log
+     * @throws WalException if IO error, appending timeout, or interrupted
+     */
+    long append(ByteBuffer log) throws WalException;
+
+    /**
+     * Append the log payload of the specified length from the input stream: the log
+     * is written as a chain of fragments, each with its own checksum, so that the log
+     * can be bigger than 16MB and isn't loaded into the heap at once. The stream isn't
+     * closed by this method.
+     *
+     * @param log the log payload stream
+     * @param length the log length
+     * @return the lsn of the appended log
+     * @throws WalException if IO error, read the stream failed, appending timeout, or interrupted
+     * @throws IllegalArgumentException if the length is less than 0 or too big for a wal file
+     */
+    long append(InputStream log, long length) throws WalException, IllegalArgumentException;
+
+    /**
+     * Append the log payloads to the logger as a group: the payloads are written
+     * contiguously in one append batch.
+     *
+     * @param logs the log payloads
+     * @return the appended logs in the order of the payloads
+     * @throws WalException if IO error, appending timeout, or interrupted. Note that
+     * part of the payloads may have been appended when failed
+     */
+    List<Wal> append(List<byte[]> logs) throws WalException;
+
+    List<Wal> append(byte[][] logs) throws WalException;
+
+    /**
+     * Append the log payload to the logger asynchronously: the caller doesn't wait for
+     * the append result, so that a thread can keep many appends in flight.
+     *
+     * @param log the log payload
+     * @param callback called exactly once when the append completed or failed
+     */
+    void appendAsync(byte[] log, WalCallback callback);
+
+    void appendAsync(String log, WalCallback callback);
+
     /** Get current first log in this wal logger.
      *
      * @return the first log, or null if no any log
@@ -79,6 +145,16 @@ public interface Waler extends AutoCloseable {
      */
     Wal get(long lsn) throws WalException, IllegalArgumentException;
 
+    /** Open the payload stream of the specified log: the log appended from a stream is
+     * read fragment by fragment, instead of loading the whole payload as get(lsn).
+     *
+     * @param lsn target log LSN
+     * @return the payload stream that must be closed, or null if not found
+     * @throws WalException if IO error
+     * @throws IllegalArgumentException if the arg lsn is less than 0
+     */
+    InputStream openStream(long lsn) throws WalException, IllegalArgumentException;
+
     /** Get the next wal of the specified wal.
      *
      * @param wal the specified wal
@@ -76,4 +76,29 @@ public class WalerFactory {
         return open(new File(dir), options, 0, fetchLast);
     }
 
+    public static PartitionedWaler openPartitioned(File dir, int partitions) throws WalException {
+        return openPartitioned(dir, partitions, null);
+    }
+
+    public static PartitionedWaler openPartitioned(File dir, int partitions, AppendOptions options)
+            throws WalException {
+        final PartitionedWaler waler = new PartitionedWaler(dir, partitions, options);
+        waler.open();
+        return waler;
+    }
+
+    /** Open a partitioned waler, whose partitions are in the given directories,
+     * e.g. on different devices.
+     *
+     * @param dirs the partition directories
+     * @param options the append options
+     * @return the partitioned waler
+     * @throws WalException if IO error
+     */
+    public static PartitionedWaler openPartitioned(File[] dirs, AppendOptions options) throws WalException {
+        final PartitionedWaler waler = new PartitionedWaler(dirs, options, 0, false);
+        waler.open();
+        return waler;
+    }
+
 }
@@ -0,0 +1,109 @@
+/**
+ * The MIT License (MIT)
+ * <p>
+ * Copyright (c) 2020 little-pan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.walog.internal;
+
+import org.walog.Durability;
+import org.walog.Wal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Append a group of payloads as one append queue item. The payloads are
+ * written contiguously in one batch, and the wals are returned together, or
+ * none of them written if the batch failed.
+ *
+ * @author little-pan
+ * @since 2026-10-16
+ */
+public class AppendBatchItem extends AppendItem<List<Wal>> {
+
+    public final List<AppendPayloadItem> items;
+
+    private final Wal[] wals;
+    private final AtomicInteger remaining;
+
+    public AppendBatchItem(List<byte[]> payloads, Durability durability) {
+        super(TAG_BATCH);
+        final int n = payloads.size();
+        this.items = new ArrayList<>(n);
+        this.wals = new Wal[n];
+        this.remaining = new AtomicInteger(n);
+        for (int i = 0; i < n; ++i) {
+            this.items.add(new Entry(this, i, payloads.get(i), durability));
+        }
+    }
+
+    @Override
+    public boolean tryRun() {
+        if (super.tryRun()) {
+            for (AppendPayloadItem item : this.items) {
+                item.tryRun();
+            }
+            return true;
+        }
+
+        return false;
+    }
+
+    protected void entryCompleted(Entry entry) {
+        final Throwable cause = entry.getCause();
+        if (cause != null) {
+            // All or nothing: an entry only fails before the batch written, e.g. acquire
+            // the file lock timeout, then fail the others so that the appender skips them
+            if (setResult(cause)) {
+                for (AppendPayloadItem item : this.items) {
+                    item.setResult(cause);
+                }
+            }
+            return;
+        }
+
+        this.wals[entry.index] = entry.getResult();
+        if (this.remaining.decrementAndGet() == 0) {
+            setResult(Arrays.asList(this.wals));
+        }
+    }
+
+    static class Entry extends AppendPayloadItem {
+
+        final AppendBatchItem batch;
+        final int index;
+
+        Entry(AppendBatchItem batch, int index, byte[] payload, Durability durability) {
+            super(payload, durability);
+            this.batch = batch;
+            this.index = index;
+        }
+
+        @Override
+        protected void completed() {
+            this.batch.entryCompleted(this);
+        }
+
+    }
+
+}
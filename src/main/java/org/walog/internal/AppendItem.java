@@ -37,6 +37,8 @@ public class AppendItem<V> {
     public static final int TAG_PURGE      = 0x04;
     public static final int TAG_CLEAR      = 0x08;
     public static final int TAG_FLAST      = 0x10; // fetch last wal
+    public static final int TAG_BATCH      = 0x20; // payload batch
+    public static final int TAG_STREAM     = 0x40; // streamed record
     public static final int TAG_END        = 0x80; // finish append
 
     public static final Object DUMMY_VALUE = new Object();
@@ -77,8 +79,21 @@ public class AppendItem<V> {
         return setResult(null, cause);
     }
 
+    public boolean setResult(Object result, Throwable cause) {
+        final boolean b = complete(result, cause);
+
+        if (b) completed();
+        return b;
+    }
+
+    /** Completion hook that's called outside the lock of this item.
+     */
+    protected void completed() {
+        // NOOP
+    }
+
     @SuppressWarnings("unchecked")
-    public synchronized boolean setResult(Object result, Throwable cause) {
+    private synchronized boolean complete(Object result, Throwable cause) {
         final boolean b;
 
         if (cause == null) {
@@ -130,6 +145,14 @@ public class AppendItem<V> {
         }
     }
 
+    protected V getResult() {
+        return this.result;
+    }
+
+    protected Throwable getCause() {
+        return this.cause;
+    }
+
     public boolean isCompleted() {
         return (this.state.get() >= 2);
     }
@@ -149,6 +172,10 @@ public class AppendItem<V> {
                 return ">> payload";
             case TAG_PURGE:
                 return ">> purge";
+            case TAG_BATCH:
+                return ">> batch";
+            case TAG_STREAM:
+                return ">> stream";
             default:
                 throw new IllegalStateException("Unknown append tag: " + this.tag);
         }
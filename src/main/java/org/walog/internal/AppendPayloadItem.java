@@ -24,23 +24,92 @@
 
 package org.walog.internal;
 
-import org.walog.SimpleWal;
-import org.walog.Wal;
+import org.walog.*;
+import org.walog.util.IoUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
 
 public class AppendPayloadItem extends AppendItem<Wal> {
 
     public final byte[] payload;
+    // The caller's buffer that's written directly, instead of the payload
+    public final ByteBuffer buffer;
+    // Completed after the batch synced if the durability synced
+    public final Durability durability;
+
+    // Asynchronous append callback
+    public final WalCallback callback;
 
     protected SimpleWal wal;
     protected boolean flushed;
 
     public AppendPayloadItem(byte[] payload) {
+        this(payload, Durability.OS_WRITE);
+    }
+
+    public AppendPayloadItem(byte[] payload, Durability durability) {
+        this(payload, durability, null);
+    }
+
+    public AppendPayloadItem(byte[] payload, Durability durability, WalCallback callback) {
         super(TAG_PAYLOAD);
         this.payload = payload;
+        this.buffer = null;
+        if (durability == null) {
+            throw new NullPointerException("durability");
+        }
+        this.durability = durability;
+        this.callback = callback;
+    }
+
+    public AppendPayloadItem(ByteBuffer buffer, Durability durability) {
+        super(TAG_PAYLOAD);
+        this.payload = null;
+        this.buffer = buffer;
+        if (durability == null) {
+            throw new NullPointerException("durability");
+        }
+        this.durability = durability;
+        this.callback = null;
+    }
+
+    @Override
+    protected void completed() {
+        final WalCallback callback = this.callback;
+        if (callback == null) {
+            return;
+        }
+
+        final Throwable cause = getCause();
+        try {
+            if (cause == null) {
+                callback.onComplete(getResult(), null);
+            } else {
+                callback.onComplete(null, walException(cause));
+            }
+        } catch (final Throwable e) {
+            IoUtils.error("Append callback failed", e);
+        }
+    }
+
+    static WalException walException(Throwable cause) {
+        if (cause instanceof WalException) {
+            return (WalException)cause;
+        } else if (cause instanceof FileLockTimeoutException) {
+            return new TimeoutWalException("Acquire file lock timeout");
+        } else if (cause instanceof IOException) {
+            return new IOWalException("Append failed", (IOException)cause);
+        } else {
+            return new WalException("Append failed", cause);
+        }
     }
 
     @Override
     public String toString() {
+        if (this.payload == null) {
+            return this.buffer.toString();
+        }
         return new String(this.payload, Wal.CHARSET);
     }
 
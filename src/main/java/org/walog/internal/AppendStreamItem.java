@@ -0,0 +1,58 @@
+/**
+ * The MIT License (MIT)
+ * <p>
+ * Copyright (c) 2020 little-pan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.walog.internal;
+
+import org.walog.Durability;
+import org.walog.Wal;
+
+import java.io.InputStream;
+
+/** Append a record from the input stream: the record is read and written fragment
+ * by fragment by the appender, and the result wal only has the lsn and the length.
+ *
+ * @author little-pan
+ * @since 2026-10-16
+ */
+public class AppendStreamItem extends AppendItem<Wal> {
+
+    public final InputStream in;
+    public final int length;
+    public final Durability durability;
+
+    public AppendStreamItem(InputStream in, int length, Durability durability) {
+        super(TAG_STREAM);
+        if (in == null) {
+            throw new NullPointerException("in");
+        }
+        if (durability == null) {
+            throw new NullPointerException("durability");
+        }
+        this.in = in;
+        this.length = length;
+        this.durability = durability;
+    }
+
+}
@@ -28,9 +28,11 @@ import java.nio.ByteBuffer;
 
 class Block implements AutoCloseable {
 
+    protected final int page;
     protected volatile ByteBuffer buffer;
 
-    Block(ByteBuffer buffer) {
+    Block(int page, ByteBuffer buffer) {
+        this.page = page;
         this.buffer = buffer;
     }
 
@@ -0,0 +1,518 @@
+/**
+ * The MIT License (MIT)
+ * <p>
+ * Copyright (c) 2020 little-pan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.walog.internal;
+
+import org.walog.util.UnitUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.Integer.getInteger;
+
+/** The process-wide block cache shared by the sealed wal files of all walers, which
+ * is budgeted by the total bytes of the blocks, and keyed by the wal file identity and
+ * the block index, so that the cached blocks of a file outlive the file closed after
+ * evicted from the wal cache. The last file still growing uses its private cache.
+ *
+ * <p>The cache is striped into segments by the key hash, and each segment is a
+ * segmented LRU: a block enters the probation segment, and it's promoted into the
+ * protected segment when hit again. A new block is admitted only if it's accessed
+ * more frequently than the victim in a frequency sketch(TinyLFU), so that a full
+ * scan of the log doesn't flush the hot blocks.
+ *
+ * <p>The blocks are read only and immutable after cached, so that readers can access
+ * them by the absolute index without retaining. The off-heap blocks are freed by GC.
+ *
+ * @author little-pan
+ * @since 2026-10-16
+ */
+public class BlockCache {
+
+    public static final String PROP_CACHE_BYTES = "org.walog.block.cacheBytes";
+    public static final String PROP_CACHE_DIRECT = "org.walog.block.cacheDirect";
+    /** The total bytes of the global block cache, and 0 for the private block cache
+     * of each wal file. */
+    public static final long CACHE_BYTES = UnitUtils.parseBytes(System.getProperty(PROP_CACHE_BYTES, "16m"));
+    /** Allocate the blocks of the global block cache off-heap if 1. */
+    public static final int CACHE_DIRECT = getInteger(PROP_CACHE_DIRECT, 0);
+
+    static final int BLOCK_SIZE = NioWalFile.BLOCK_SIZE;
+    static final int MAX_SEGMENTS = 16;
+    // The protected segment percent of the segment capacity
+    static final int PROTECTED_PERCENT = 80;
+
+    private static final BlockCache INSTANCE;
+
+    static {
+        if (CACHE_BYTES < 0L) {
+            throw new RuntimeException(PROP_CACHE_BYTES + " must bigger than or equal to 0");
+        }
+        INSTANCE = (CACHE_BYTES == 0L? null: new BlockCache(CACHE_BYTES, CACHE_DIRECT == 1));
+    }
+
+    private final long capacity;
+    private final boolean direct;
+    private final Segment[] segments;
+
+    public BlockCache(long capacity, boolean direct) {
+        if (capacity < BLOCK_SIZE) {
+            throw new IllegalArgumentException("capacity less than block size " + BLOCK_SIZE);
+        }
+
+        // Keep at least 4 blocks in each segment
+        int n = 1;
+        while (n < MAX_SEGMENTS && capacity / (n << 1) >= BLOCK_SIZE << 2) {
+            n <<= 1;
+        }
+        this.capacity = capacity;
+        this.direct = direct;
+        this.segments = new Segment[n];
+        for (int i = 0; i < n; ++i) {
+            this.segments[i] = new Segment(capacity / n);
+        }
+    }
+
+    /** Get the global block cache.
+     *
+     * @return the global block cache, or null if the cache bytes is 0
+     */
+    public static BlockCache getInstance() {
+        return INSTANCE;
+    }
+
+    /** Allocate a full block buffer for caching in little endian, off-heap if the
+     * cache is direct.
+     *
+     * @return the block buffer
+     */
+    public ByteBuffer allocate() {
+        final ByteBuffer buf;
+        if (this.direct) {
+            buf = ByteBuffer.allocateDirect(BLOCK_SIZE);
+        } else {
+            buf = ByteBuffer.allocate(BLOCK_SIZE);
+        }
+        return buf.order(NioWalFile.BYTE_ORDER);
+    }
+
+    public ByteBuffer get(FileId file, int page) {
+        final Key key = new Key(file, page);
+        return segment(key).get(key);
+    }
+
+    /** Put the full block into this cache if admitted.
+     *
+     * @param file the file identity
+     * @param page the block index
+     * @param block the block buffer
+     * @return true if admitted, otherwise false
+     */
+    public boolean put(FileId file, int page, ByteBuffer block) {
+        final Key key = new Key(file, page);
+        return segment(key).put(key, block);
+    }
+
+    /** Invalidate the blocks of the file from the page, e.g. the file truncated or
+     * the partial record rolled back. All segments are scanned.
+     *
+     * @param file the file identity
+     * @param fromPage the first block index invalidated
+     */
+    public void invalidate(final FileId file, final int fromPage) {
+        invalidate(new Filter() {
+            @Override
+            public boolean test(Key key) {
+                return (key.page >= fromPage && key.file.equals(file));
+            }
+        });
+    }
+
+    /** Invalidate the blocks of the files to the lsn in the directory, e.g. the files
+     * purged or cleared.
+     *
+     * @param dir the wal directory
+     * @param toLsn the last file lsn invalidated
+     */
+    public void invalidate(File dir, final long toLsn) {
+        final String path = dir.getAbsolutePath();
+        invalidate(new Filter() {
+            @Override
+            public boolean test(Key key) {
+                return (key.file.lsn <= toLsn && key.file.dir.equals(path));
+            }
+        });
+    }
+
+    public void clear() {
+        invalidate(new Filter() {
+            @Override
+            public boolean test(Key key) {
+                return true;
+            }
+        });
+    }
+
+    protected void invalidate(Filter filter) {
+        for (final Segment segment : this.segments) {
+            segment.invalidate(filter);
+        }
+    }
+
+    protected Segment segment(Key key) {
+        // Note: the high bits, for the hash map in the segment indexed by the low bits
+        return this.segments[(key.hashCode() >>> 28) & (this.segments.length - 1)];
+    }
+
+    public long getCapacity() {
+        return this.capacity;
+    }
+
+    public boolean isDirect() {
+        return this.direct;
+    }
+
+    /** The bytes of the blocks cached.
+     *
+     * @return the cached bytes
+     */
+    public long getSize() {
+        long n = 0L;
+        for (final Segment segment : this.segments) {
+            n += segment.size;
+        }
+        return n;
+    }
+
+    public long getHits() {
+        long n = 0L;
+        for (final Segment segment : this.segments) {
+            n += segment.hits;
+        }
+        return n;
+    }
+
+    public long getMisses() {
+        long n = 0L;
+        for (final Segment segment : this.segments) {
+            n += segment.misses;
+        }
+        return n;
+    }
+
+    public long getEvictions() {
+        long n = 0L;
+        for (final Segment segment : this.segments) {
+            n += segment.evictions;
+        }
+        return n;
+    }
+
+    /** The blocks not admitted for less frequently accessed than the victims.
+     *
+     * @return the rejected blocks count
+     */
+    public long getRejections() {
+        long n = 0L;
+        for (final Segment segment : this.segments) {
+            n += segment.rejections;
+        }
+        return n;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BlockCache{capacity=%d, size=%d, hits=%d, misses=%d, evictions=%d, rejections=%d}",
+                getCapacity(), getSize(), getHits(), getMisses(), getEvictions(), getRejections());
+    }
+
+    /** The identity of the sealed wal file: the directory, the file lsn, and the file
+     * key with the modified time and size, so that the blocks of a file deleted and
+     * created again in the same name aren't hit, even if the inode reused. The creation
+     * time isn't used, for it's the modified time on some platforms.
+     */
+    public static class FileId {
+
+        final String dir;
+        final long lsn;
+        final Object fileKey;
+        final long modified;
+        final long size;
+
+        FileId(String dir, long lsn, Object fileKey, long modified, long size) {
+            this.dir = dir;
+            this.lsn = lsn;
+            this.fileKey = fileKey;
+            this.modified = modified;
+            this.size = size;
+        }
+
+        public static FileId of(File file, long lsn) throws IOException {
+            final BasicFileAttributes attrs = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            final String dir = file.getAbsoluteFile().getParent();
+            final long modified = attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+            return new FileId(dir, lsn, attrs.fileKey(), modified, attrs.size());
+        }
+
+        @Override
+        public int hashCode() {
+            int h = this.dir.hashCode() * 31 + (int)(this.lsn ^ (this.lsn >>> 32));
+            return h * 31 + (int)(this.modified ^ (this.modified >>> 32));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) {
+                return true;
+            }
+            if (!(o instanceof FileId)) {
+                return false;
+            }
+            final FileId other = (FileId)o;
+            return (this.lsn == other.lsn && this.modified == other.modified
+                    && this.size == other.size && this.dir.equals(other.dir)
+                    && (this.fileKey == null? other.fileKey == null: this.fileKey.equals(other.fileKey)));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s/0x%x(%s)", this.dir, this.lsn, this.fileKey);
+        }
+
+    }
+
+    interface Filter {
+
+        boolean test(Key key);
+
+    }
+
+    static class Key {
+
+        final FileId file;
+        final int page;
+        final int hash;
+
+        Key(FileId file, int page) {
+            this.file = file;
+            this.page = page;
+            final int h = (file.hashCode() * 31 + page) * 0x9e3779b9;
+            this.hash = h ^ (h >>> 16);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key)o;
+            return (this.page == other.page && this.file.equals(other.file));
+        }
+
+    }
+
+    static class Segment {
+
+        final long capacity;
+        final long protectedCapacity;
+        // Access ordered: the eldest is the victim
+        final LinkedHashMap<Key, ByteBuffer> probation = new LinkedHashMap<>(16, 0.75f, true);
+        final LinkedHashMap<Key, ByteBuffer> protect = new LinkedHashMap<>(16, 0.75f, true);
+        final FrequencySketch sketch;
+        long protectedSize;
+        // Statistics
+        volatile long size;
+        volatile long hits, misses, evictions, rejections;
+
+        Segment(long capacity) {
+            this.capacity = capacity;
+            this.protectedCapacity = capacity * PROTECTED_PERCENT / 100;
+            this.sketch = new FrequencySketch((int)Math.min(capacity / BLOCK_SIZE, 1 << 20));
+        }
+
+        synchronized ByteBuffer get(Key key) {
+            this.sketch.increment(key.hashCode());
+            ByteBuffer buf = this.protect.get(key);
+            if (buf != null) {
+                ++this.hits;
+                return buf;
+            }
+            buf = this.probation.remove(key);
+            if (buf == null) {
+                ++this.misses;
+                return null;
+            }
+
+            // Promote, and demote the protected victims into the probation
+            ++this.hits;
+            this.protect.put(key, buf);
+            this.protectedSize += buf.capacity();
+            final Iterator<Map.Entry<Key, ByteBuffer>> it = this.protect.entrySet().iterator();
+            while (this.protectedSize > this.protectedCapacity && it.hasNext()) {
+                final Map.Entry<Key, ByteBuffer> e = it.next();
+                if (e.getKey() == key) {
+                    break;
+                }
+                it.remove();
+                this.protectedSize -= e.getValue().capacity();
+                this.probation.put(e.getKey(), e.getValue());
+            }
+            return buf;
+        }
+
+        synchronized boolean put(Key key, ByteBuffer block) {
+            if (this.probation.containsKey(key) || this.protect.containsKey(key)) {
+                return true;
+            }
+
+            final int n = block.capacity();
+            long size = this.size;
+            while (size + n > this.capacity) {
+                // Admit the candidate only if more frequent than the victim
+                final Map<Key, ByteBuffer> victims = this.probation.isEmpty()? this.protect: this.probation;
+                final Iterator<Map.Entry<Key, ByteBuffer>> it = victims.entrySet().iterator();
+                if (!it.hasNext()) {
+                    ++this.rejections;
+                    return false;
+                }
+                final Map.Entry<Key, ByteBuffer> victim = it.next();
+                final int freq = this.sketch.frequency(key.hashCode());
+                if (freq <= this.sketch.frequency(victim.getKey().hashCode())) {
+                    ++this.rejections;
+                    return false;
+                }
+                it.remove();
+                final int m = victim.getValue().capacity();
+                if (victims == this.protect) {
+                    this.protectedSize -= m;
+                }
+                size -= m;
+                ++this.evictions;
+            }
+            this.probation.put(key, block);
+            this.size = size + n;
+            return true;
+        }
+
+        synchronized void invalidate(Filter filter) {
+            final long m = invalidate(this.protect, filter);
+            this.protectedSize -= m;
+            this.size -= m + invalidate(this.probation, filter);
+        }
+
+        private static long invalidate(Map<Key, ByteBuffer> map, Filter filter) {
+            long size = 0L;
+            final Iterator<Map.Entry<Key, ByteBuffer>> it = map.entrySet().iterator();
+            while (it.hasNext()) {
+                final Map.Entry<Key, ByteBuffer> e = it.next();
+                if (filter.test(e.getKey())) {
+                    it.remove();
+                    size += e.getValue().capacity();
+                }
+            }
+            return size;
+        }
+
+    }
+
+    /** The count-min sketch of the 4-bit access frequencies, which are halved after
+     * the sample size accesses, so that the old hot blocks age out.
+     */
+    static class FrequencySketch {
+
+        static final int DEPTH = 4;
+        static final int[] SEEDS = {0x97cb3127, 0xb1f7ec8f, 0x3ac6d5b1, 0x5a8f1c4b};
+        static final int MAX_FREQ = 15;
+
+        final byte[] table;
+        final int mask;
+        final int sampleSize;
+        int additions;
+
+        FrequencySketch(int maxBlocks) {
+            // Note: wide enough for the small segments, otherwise the frequencies of the
+            // scanned blocks are inflated by collisions
+            int width = 1024;
+            while (width < maxBlocks << 2) {
+                width <<= 1;
+            }
+            this.table = new byte[width * DEPTH];
+            this.mask = width - 1;
+            this.sampleSize = width * 10;
+        }
+
+        int index(int hash, int i) {
+            int h = (hash ^ SEEDS[i]) * 0x9e3779b9;
+            h ^= h >>> 16;
+            return i * (this.mask + 1) + (h & this.mask);
+        }
+
+        int frequency(int hash) {
+            int freq = MAX_FREQ;
+            for (int i = 0; i < DEPTH; ++i) {
+                freq = Math.min(freq, this.table[index(hash, i)]);
+            }
+            return freq;
+        }
+
+        void increment(int hash) {
+            boolean added = false;
+            for (int i = 0; i < DEPTH; ++i) {
+                final int j = index(hash, i);
+                if (this.table[j] < MAX_FREQ) {
+                    ++this.table[j];
+                    added = true;
+                }
+            }
+            if (added && ++this.additions >= this.sampleSize) {
+                reset();
+            }
+        }
+
+        void reset() {
+            for (int i = 0; i < this.table.length; ++i) {
+                this.table[i] >>>= 1;
+            }
+            this.additions = 0;
+        }
+
+    }
+
+}
@@ -0,0 +1,62 @@
+/**
+ * The MIT License (MIT)
+ * <p>
+ * Copyright (c) 2020 little-pan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.walog.internal;
+
+import org.walog.SimpleWal;
+
+/** The wal appended from the caller's byte buffer. The payload isn't kept,
+ * so that only the lsn and the size of the wal are available.
+ *
+ * @author little-pan
+ * @since 2026-10-16
+ */
+class BufferWal extends SimpleWal {
+
+    private static final long serialVersionUID = 1L;
+
+    protected final int length;
+
+    BufferWal(long lsn, int length) {
+        super(lsn, lengthPrefix(length), null);
+        this.length = length;
+    }
+
+    @Override
+    protected int getNextOffset() {
+        final int headSize = headSize(lengthPrefix(this.length));
+        return (getOffset() + headSize + this.length + 8);
+    }
+
+    @Override
+    public byte[] getData() {
+        throw new UnsupportedOperationException("Payload of buffer wal not kept");
+    }
+
+    @Override
+    public String toString() {
+        return String.format("lsn 0x%x, length %d", this.lsn, this.length);
+    }
+
+}
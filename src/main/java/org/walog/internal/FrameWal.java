@@ -0,0 +1,64 @@
+/**
+ * The MIT License (MIT)
+ * <p>
+ * Copyright (c) 2020 little-pan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.walog.internal;
+
+import org.walog.SimpleWal;
+
+/** The wal in a compressed frame. The wals of a frame have the successive lsns
+ * from the frame offset, and the next offset of the last wal is the frame end.
+ *
+ * @author little-pan
+ * @since 2026-10-16
+ */
+class FrameWal extends SimpleWal {
+
+    private static final long serialVersionUID = 1L;
+
+    protected final int frameOffset;
+    protected final int index;
+    protected final int count;
+    protected final int frameEnd;
+    // The frame bytes for replication, only kept by the first wal read from the file
+    protected final byte[] frame;
+
+    FrameWal(long lsn, byte[] data, int frameOffset, int index, int count, int frameEnd, byte[] frame) {
+        super(lsn, lengthPrefix(data), data);
+        this.frameOffset = frameOffset;
+        this.index = index;
+        this.count = count;
+        this.frameEnd = frameEnd;
+        this.frame = frame;
+    }
+
+    @Override
+    protected int getNextOffset() {
+        if (this.index == this.count - 1) {
+            return this.frameEnd;
+        } else {
+            return (getOffset() + 1);
+        }
+    }
+
+}
@@ -26,11 +26,13 @@ package org.walog.internal;
 
 import org.walog.*;
 import org.walog.util.IoUtils;
+import org.walog.util.MpscRingQueue;
 
 import static org.walog.util.WalFileUtils.*;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.RandomAccessFile;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
@@ -39,7 +41,9 @@ import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
 
 import static java.util.concurrent.TimeUnit.*;
@@ -54,27 +58,60 @@ class NioAppender extends Thread implements AutoCloseable {
 
     // Appender ID generator
     static final AtomicLong ID_GEN = new AtomicLong();
+    // The backoff of waiting for the file lock held by other processes
+    static final long FILE_LOCK_BACKOFF_MIN = MICROSECONDS.toNanos(50);
+    static final long FILE_LOCK_BACKOFF_MAX = MILLISECONDS.toNanos(10);
 
     // Basic states
     private final int asyncMode;
     protected final boolean flushUnlock;
     private volatile boolean open;
     protected boolean appended;
+    // Has the appended wals that the auto flush should sync
+    protected boolean dirty;
     protected long syncTime;
+    // Dirty state for monitoring: the bytes and the first append time not synced yet
+    private volatile long dirtyBytes;
+    private volatile long dirtyTime;
+    // File lock state for monitoring: the waits, the wait time and the handoffs
+    private volatile long fileLockWaits;
+    private volatile long fileLockWaitTime;
+    private volatile long fileLockHandoffs;
+    // The full recoveries of the append file after the file lock acquired
+    private volatile long recoveries;
+    // Group commit state for monitoring: the batches appended and the syncs of them
+    private volatile long batches;
+    private volatile long syncs;
+    // The last lsn when the file lock released, or -1 if no wal
+    private long releasedLsn = Long.MIN_VALUE;
     protected final NioWaler waler;
     private SimpleWal lastWal;
 
     // Batch properties
     protected final BlockingQueue<AppendItem<?>> appendQueue;
+    // The published items combined by the append lock owner in sync mode
+    protected final Queue<AppendItem<?>> combineQueue;
     protected final List<AppendPayloadItem> batchItems;
     protected final int batchSize;
+    // Adaptive batch: the batch limit, and the moving averages of the batch size and
+    // the commit time of batches
+    protected final boolean adaptiveBatch;
+    protected final long lingerNanos;
+    // The appender thread flushes periodically in sync mode
+    protected final boolean syncFlusher;
+    private volatile int batchLimit;
+    private volatile double avgBatchSize;
+    private long avgCommitTime;
 
     // Basic resources
     protected final ReentrantLock appendLock;
     private NioWalFile appendFile;
     private RandomAccessFile lockFile;
     private FileChannel lockChan;
+    private NioTailState tailState;
     private FileLock fileLock;
+    protected final NioPreallocator preallocator;
+    protected final NioSealer sealer;
 
     public NioAppender(NioWaler waler) {
         this(waler, (AppendOptions.FLUSH_UNLOCK == 1), getAsyncMode(),
@@ -100,12 +137,43 @@ class NioAppender extends Thread implements AutoCloseable {
         this.waler = waler;
         this.batchItems  = new ArrayList<>(batchSize);
         this.batchSize   = batchSize;
+        this.batchLimit  = batchSize;
         this.appendLock  = new ReentrantLock();
-        this.appendQueue = isAsyncMode()? new ArrayBlockingQueue<AppendItem<?>>(queueSize): null;
+        final AppendOptions options = waler.getAppendOptions();
+        this.adaptiveBatch = isAsyncMode() && options.isAdaptiveBatch();
+        this.lingerNanos = MICROSECONDS.toNanos(options.getLinger());
+        this.syncFlusher = !isAsyncMode() && options.isSyncFlusher();
+        if (!isAsyncMode()) {
+            this.appendQueue = null;
+        } else if (options.isRingQueue()) {
+            this.appendQueue = new MpscRingQueue<>(queueSize, options.getWaitStrategy());
+        } else {
+            this.appendQueue = new ArrayBlockingQueue<>(queueSize);
+        }
+        if (!isAsyncMode() && options.isCombine()) {
+            this.combineQueue = new ConcurrentLinkedQueue<>();
+        } else {
+            this.combineQueue = null;
+        }
+        if (options.isPreallocate()) {
+            this.preallocator = new NioPreallocator(waler.getDirectory(), ROLL_SIZE);
+        } else {
+            this.preallocator = null;
+        }
+        this.sealer = new NioSealer();
 
         this.open = true;
     }
 
+    @Override
+    public synchronized void start() {
+        if (this.preallocator != null) {
+            this.preallocator.start();
+        }
+        this.sealer.start();
+        super.start();
+    }
+
     public <V> V append(final AppendItem<V> item) throws WalException {
         try {
             ensureOpen();
@@ -125,6 +193,8 @@ class NioAppender extends Thread implements AutoCloseable {
                     ensureOpen();
                     return (item.get());
                 }
+            } else if (this.combineQueue != null) {
+                return combine(item);
             } else {
                 if (item.tryRun()) {
                     final boolean acquired;
@@ -160,6 +230,120 @@ class NioAppender extends Thread implements AutoCloseable {
         }
     }
 
+    /** Flat combining: publish the item, then the append lock owner appends all
+     * published items in batches, and the others wait for their results.
+     *
+     * @param item the append item
+     * @return the item result
+     * @throws IOException if IO error
+     * @throws InterruptedException if interrupted when acquiring the append lock
+     */
+    protected <V> V combine(final AppendItem<V> item) throws IOException, InterruptedException {
+        this.combineQueue.offer(item);
+
+        boolean acquired = false;
+        try {
+            if (AppendOptions.APPEND_TIMEOUT <= 0) {
+                this.appendLock.lock();
+                acquired = true;
+            } else {
+                item.expiryTime = System.currentTimeMillis() + AppendOptions.APPEND_TIMEOUT;
+                acquired = this.appendLock.tryLock(AppendOptions.APPEND_TIMEOUT, MILLISECONDS);
+            }
+            if (acquired) {
+                // Check again: appender may be closed before published
+                ensureOpen();
+                if (!item.isCompleted()) {
+                    combine(item, this.combineQueue);
+                }
+            }
+        } catch (final WalException | InterruptedException e) {
+            // Note: the item may be run by another thread, then wait for its result
+            if (item.cancel()) {
+                throw e;
+            }
+        } finally {
+            if (acquired) {
+                this.appendLock.unlock();
+            }
+        }
+        if (!acquired && item.cancel()) {
+            throw new TimeoutWalException("Append timeout");
+        }
+
+        return item.get();
+    }
+
+    private void combine(final AppendItem<?> own, final Queue<AppendItem<?>> queue) throws IOException {
+        AppendItem<?> item = null;
+        try {
+            int i = 0;
+            for (;;) {
+                // Note: combine a batch at least, and return after its own item completed
+                if (i >= this.batchSize) {
+                    batchAppend();
+                    if (own.isCompleted()) {
+                        break;
+                    }
+                    i = 0;
+                }
+                item = queue.poll();
+                if (item == null) {
+                    break;
+                }
+                if (item.tryRun()) {
+                    handle(item, false);
+                    ++i;
+                }
+            }
+            item = null;
+            batchAppend();
+        } catch (final Throwable cause) {
+            setResults(cause);
+            if (item != null) {
+                item.setResult(cause);
+            }
+            throw cause;
+        }
+    }
+
+    /** Append the item without waiting for its result, which is delivered by
+     * the item completion hook. The item is failed in the caller thread if it
+     * can't be queued.
+     *
+     * @param item the append item
+     */
+    public void appendAsync(final AppendItem<?> item) {
+        try {
+            if (!isAsyncMode()) {
+                // Handled in the caller thread
+                append(item);
+                return;
+            }
+
+            ensureOpen();
+            final boolean offered;
+            if (AppendOptions.APPEND_TIMEOUT <= 0) {
+                this.appendQueue.put(item);
+                offered = true;
+            } else {
+                item.expiryTime = System.currentTimeMillis() + AppendOptions.APPEND_TIMEOUT;
+                offered = this.appendQueue.offer(item, AppendOptions.APPEND_TIMEOUT, MILLISECONDS);
+            }
+            if (!offered) {
+                throw new TimeoutWalException("Append timeout");
+            }
+            // Check again: appender may be closed before enqueued
+            ensureOpen();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            item.setResult(new InterruptedWalException("Append interrupted", e));
+        } catch (RuntimeException e) {
+            // Note: no-op if the item has been completed
+            item.setResult(e);
+        }
+    }
+
     protected void ensureOpen() throws WalException {
         if (!isOpen()) {
             throw new IOWalException("wal appender closed");
@@ -170,6 +354,9 @@ class NioAppender extends Thread implements AutoCloseable {
     public void run() {
         if (!isAsyncMode()) {
             IoUtils.info("wal appender runes in sync mode");
+            if (this.syncFlusher && isAutoFlush()) {
+                flusher();
+            }
             return;
         }
         IoUtils.info("wal appender runes in async mode");
@@ -190,7 +377,8 @@ class NioAppender extends Thread implements AutoCloseable {
     }
 
     private AppendItem<?> background(AppendItem<?> item) throws IOException, InterruptedException {
-        boolean end = false;
+        final int limit = this.batchLimit;
+        boolean end = false, lingered = false;
         int i = 0;
 
         this.appendLock.lock();
@@ -202,35 +390,28 @@ class NioAppender extends Thread implements AutoCloseable {
                     handle(item, false);
                     ++i;
                 }
-                if (i >= this.batchSize) {
+                if (i >= limit) {
                     break;
                 }
 
                 // Try next item
                 item = this.appendQueue.poll();
+                if (item == null && !lingered) {
+                    item = linger();
+                    lingered = true;
+                }
                 if (item != null) {
                     end = (item.tag == AppendItem.TAG_END);
                 }
             } while (item != null && !end);
 
             // Do batch append
+            final boolean commit = !this.batchItems.isEmpty();
+            final long start = System.nanoTime();
             batchAppend();
+            adapt(i, limit, commit? System.nanoTime() - start: -1L);
             // Sync storage state
-            if (this.appended && isAutoFlush() && isFlushTime()) {
-                IoUtils.debug("Auto flush start");
-                AppendItem<?> sync = new AppendItem<>(AppendItem.TAG_SYNC);
-                if (AppendOptions.APPEND_TIMEOUT > 0) {
-                    sync.expiryTime = System.currentTimeMillis() + AppendOptions.APPEND_TIMEOUT;
-                }
-                try {
-                    sync.tryRun();
-                    handle(sync, false);
-                    sync.get();
-                } catch (FileLockTimeoutException e) {
-                    // Ignore: continue sync at next time
-                }
-                IoUtils.debug("Auto flush end");
-            }
+            autoFlush();
         } finally {
             this.appendLock.unlock();
         }
@@ -238,8 +419,26 @@ class NioAppender extends Thread implements AutoCloseable {
         if (end) {
             return null;
         }
-        // Try wait more
-        item = this.appendQueue.take();
+        // Try wait more: the appended wals are flushed when the flush time
+        // reached even if no more item appended
+        for (;;) {
+            final long timeout = flushTimeout();
+            if (timeout < 0L) {
+                item = this.appendQueue.take();
+                break;
+            }
+            item = this.appendQueue.poll(timeout, MILLISECONDS);
+            if (item != null) {
+                break;
+            }
+            this.appendLock.lock();
+            try {
+                ensureOpen();
+                autoFlush();
+            } finally {
+                this.appendLock.unlock();
+            }
+        }
         if (item.tag == AppendItem.TAG_END) {
             return null;
         } else {
@@ -247,11 +446,227 @@ class NioAppender extends Thread implements AutoCloseable {
         }
     }
 
+    /** Linger for more wals when the queue is empty in adaptive batch mode, if the commit
+     * of the batch is costly: the linger is limited by the half of the average commit
+     * time, so that lingering costs less than committing the wals in more batches.
+     *
+     * @return the next item, or null if no item in the linger time
+     * @throws InterruptedException if interrupted
+     */
+    private AppendItem<?> linger() throws InterruptedException {
+        if (!this.adaptiveBatch || this.batchItems.isEmpty()) {
+            return null;
+        }
+        final long timeout = Math.min(this.lingerNanos, this.avgCommitTime >> 1);
+        if (timeout <= 0L) {
+            return null;
+        }
+        return this.appendQueue.poll(timeout, NANOSECONDS);
+    }
+
+    /** Update the batch statistics, and adjust the batch limit in adaptive batch mode:
+     * double the limit if the batch was cut by it and more items queued, e.g. bursts,
+     * or halve the limit if the batch used less than a quarter of it.
+     *
+     * @param items the items of the batch
+     * @param limit the batch limit
+     * @param commitTime the commit time of the batch in nanoseconds, or -1 if no wals
+     */
+    private void adapt(int items, int limit, long commitTime) {
+        this.avgBatchSize += (items - this.avgBatchSize) / 16.0;
+        if (commitTime >= 0L) {
+            this.avgCommitTime += (commitTime - this.avgCommitTime) >> 4;
+        }
+        if (!this.adaptiveBatch) {
+            return;
+        }
+
+        final int maxLimit = this.batchSize << 4;
+        if (items >= limit && limit < maxLimit && this.appendQueue.size() > 0) {
+            this.batchLimit = Math.min(limit << 1, maxLimit);
+        } else if (items < limit >> 2 && limit > this.batchSize) {
+            this.batchLimit = Math.max(limit >> 1, this.batchSize);
+        }
+    }
+
+    /** The flusher of the sync mode appender if the sync flusher option on: the appends
+     * are executed in the caller threads, and this appender thread flushes the appended
+     * wals periodically. The
+     * flusher parks without timeout if no wals appended since the last flush, and is
+     * unparked by the first appended wal.
+     */
+    protected void flusher() {
+        try {
+            long timeout = -1L;
+            while (isOpen()) {
+                if (timeout < 0L) {
+                    LockSupport.park(this);
+                } else {
+                    LockSupport.parkNanos(this, MILLISECONDS.toNanos(timeout));
+                }
+                this.appendLock.lock();
+                try {
+                    if (!isOpen()) {
+                        break;
+                    }
+                    autoFlush();
+                    timeout = flushTimeout();
+                } finally {
+                    this.appendLock.unlock();
+                }
+            }
+        } catch (final Throwable cause) {
+            IoUtils.error("wal appender flush failed", cause);
+            close();
+        }
+    }
+
+    /** Auto flush the appended wals if the flush time reached. The caller must hold
+     * the append lock.
+     *
+     * @throws IOException if IO error
+     */
+    protected void autoFlush() throws IOException {
+        if (this.appended && isAutoFlush() && isFlushTime()) {
+            IoUtils.debug("Auto flush start");
+            AppendItem<?> sync = new AppendItem<>(AppendItem.TAG_SYNC);
+            if (AppendOptions.APPEND_TIMEOUT > 0) {
+                sync.expiryTime = System.currentTimeMillis() + AppendOptions.APPEND_TIMEOUT;
+            }
+            try {
+                sync.tryRun();
+                sync(sync, false);
+                sync.get();
+            } catch (FileLockTimeoutException e) {
+                // Ignore: continue sync at next time
+            }
+            IoUtils.debug("Auto flush end");
+        }
+    }
+
     protected boolean isFlushTime() {
         return (AppendOptions.FLUSH_PERIOD <= 0 ||
                 System.currentTimeMillis()-this.syncTime >= AppendOptions.FLUSH_PERIOD);
     }
 
+    /** The time to wait for the next auto flush.
+     *
+     * @return the milliseconds to the next flush time, or -1 if no wals to flush
+     */
+    protected long flushTimeout() {
+        if (!this.appended || !isAutoFlush()) {
+            return -1L;
+        }
+        long timeout = this.syncTime + AppendOptions.FLUSH_PERIOD - System.currentTimeMillis();
+        // Note: wait at least 1ms, avoid busy loop if the auto flush can't complete
+        return Math.max(timeout, 1L);
+    }
+
+    /** The bytes appended but not synced yet, excluding the wals in NONE durability.
+     *
+     * @return the dirty bytes
+     */
+    public long getDirtyBytes() {
+        return this.dirtyBytes;
+    }
+
+    /** The age of the oldest dirty wal: the data-loss window if crash now.
+     *
+     * @return the dirty age in milliseconds, or 0 if no dirty wals
+     */
+    public long getDirtyAge() {
+        final long dirtyTime = this.dirtyTime;
+        if (dirtyTime == 0L) {
+            return 0L;
+        }
+        return Math.max(System.currentTimeMillis() - dirtyTime, 0L);
+    }
+
+    /** The times of waiting for the append file lock held by other processes.
+     *
+     * @return the file lock waits
+     */
+    public long getFileLockWaits() {
+        return this.fileLockWaits;
+    }
+
+    /** The total time of waiting for the append file lock.
+     *
+     * @return the wait time in milliseconds
+     */
+    public long getFileLockWaitTime() {
+        return NANOSECONDS.toMillis(this.fileLockWaitTime);
+    }
+
+    /** The times of the append file lock changed hands: other processes appended
+     * wals after this appender released the file lock.
+     *
+     * @return the file lock handoffs
+     */
+    public long getFileLockHandoffs() {
+        return this.fileLockHandoffs;
+    }
+
+    /** The times of the append file recovered after the append file lock acquired,
+     * i.e. not resumed from the tail state saved by the last lock holder.
+     *
+     * @return the recoveries
+     */
+    public long getRecoveries() {
+        return this.recoveries;
+    }
+
+    /** The batches appended into the append file, including the batches of one wal
+     * in sync mode.
+     *
+     * @return the batches
+     */
+    public long getBatches() {
+        return this.batches;
+    }
+
+    /** The syncs of the append file, i.e. the group commits of the durable wals,
+     * the auto flushes and the explicit syncs.
+     *
+     * @return the syncs
+     */
+    public long getSyncs() {
+        return this.syncs;
+    }
+
+    /** The current batch limit of the async appender, which is the batch size if
+     * not in adaptive batch mode.
+     *
+     * @return the batch limit
+     */
+    public int getBatchLimit() {
+        return this.batchLimit;
+    }
+
+    /** The moving average of the items in each batch of the async appender.
+     *
+     * @return the average batch size
+     */
+    public double getAvgBatchSize() {
+        return this.avgBatchSize;
+    }
+
+    private void setDirty(long bytes) {
+        if (bytes <= 0L) {
+            return;
+        }
+        if (this.dirtyTime == 0L) {
+            this.dirtyTime = System.currentTimeMillis();
+        }
+        this.dirtyBytes += bytes;
+    }
+
+    private void resetDirty() {
+        this.dirty = false;
+        this.dirtyBytes = 0L;
+        this.dirtyTime = 0L;
+    }
+
     protected void handle(AppendItem<?> item, boolean syncAppend) throws IOException {
         boolean fatal = true;
         try {
@@ -262,6 +677,20 @@ class NioAppender extends Thread implements AutoCloseable {
                         batchAppend();
                     }
                     break;
+                case AppendItem.TAG_BATCH:
+                    final AppendBatchItem batch = (AppendBatchItem) item;
+                    for (AppendPayloadItem entry : batch.items) {
+                        // Note: the file lock may be acquired for the entry
+                        entry.expiryTime = batch.expiryTime;
+                    }
+                    this.batchItems.addAll(batch.items);
+                    if (syncAppend) {
+                        batchAppend();
+                    }
+                    break;
+                case AppendItem.TAG_STREAM:
+                    appendStream((AppendStreamItem) item);
+                    break;
                 case AppendItem.TAG_SYNC:
                     sync(item);
                     break;
@@ -300,10 +729,27 @@ class NioAppender extends Thread implements AutoCloseable {
         }
         checkFileLock();
 
+        if (wal instanceof BufferWal || wal instanceof TailWal
+                || wal instanceof StreamWal && !((StreamWal)wal).hasData()) {
+            // Note: the payload of buffer wal not kept
+            wal = this.appendFile.get(wal.getOffset());
+            this.lastWal = wal;
+        }
         item.setResult(wal);
     }
 
     protected void sync(AppendItem<?> item) throws IOException {
+        sync(item, true);
+    }
+
+    /** Sync the append file.
+     *
+     * @param item the sync item
+     * @param force sync even if no dirty wals, otherwise only release the file lock
+     *              in flushUnlock mode, e.g. the auto flush after NONE durability wals
+     * @throws IOException if IO error
+     */
+    protected void sync(AppendItem<?> item, boolean force) throws IOException {
         batchAppend();
         if (item.isCompleted()) {
             return;
@@ -314,8 +760,14 @@ class NioAppender extends Thread implements AutoCloseable {
         }
         checkFileLock();
 
-        this.appendFile.sync();
+        // Note: the sync also covers the sealed files
+        this.sealer.await();
+        if (force || this.dirty) {
+            this.appendFile.sync();
+            ++this.syncs;
+        }
         this.appended = false;
+        resetDirty();
         this.syncTime = System.currentTimeMillis();
         item.setResult(AppendItem.DUMMY_VALUE);
         if (isFlushUnlock()) {
@@ -334,10 +786,19 @@ class NioAppender extends Thread implements AutoCloseable {
                 item.setResult(Boolean.FALSE);
                 return;
             }
+            invalidateBlocks(file);
         }
         item.setResult(Boolean.TRUE);
     }
 
+    // Drop the cached blocks of the deleted file in the global block cache
+    protected void invalidateBlocks(File file) {
+        final BlockCache cache = BlockCache.getInstance();
+        if (cache != null) {
+            cache.invalidate(file.getParentFile(), lsn(file.getName()));
+        }
+    }
+
     protected void clear(AppendItem<?> item) throws IOException {
         batchAppend();
         if (item.isCompleted()) {
@@ -350,7 +811,7 @@ class NioAppender extends Thread implements AutoCloseable {
         checkFileLock();
 
         // Prepare
-        if (this.appendFile.size() != 0L) {
+        if (this.appendFile.position() != 0L) {
             long nextFileLsn = nextFileLsn(this.appendFile.lsn);
             String nextFilename = filename(nextFileLsn);
             File nextFile = this.waler.newFile(nextFilename);
@@ -359,7 +820,7 @@ class NioAppender extends Thread implements AutoCloseable {
             // - Create a new append file
             // Note: Creating new append file must be before doing clear, otherwise it's
             // possible that no append file existing after clearing if crash!
-            this.appendFile = new NioWalFile(nextFile);
+            this.appendFile = newAppendFile(nextFile);
         }
         // - Clear wal cache
         this.waler.clearCache();
@@ -377,6 +838,7 @@ class NioAppender extends Thread implements AutoCloseable {
                 item.setResult(Boolean.FALSE);
                 return;
             }
+            invalidateBlocks(file);
         }
 
         item.setResult(Boolean.TRUE);
@@ -415,15 +877,91 @@ class NioAppender extends Thread implements AutoCloseable {
             if (curr != next) {
                 rollFile(curr, next);
             }
-        }
-        if (this.appendFile.size() >= ROLL_SIZE) {
+        } else if (this.appendFile.position() >= ROLL_SIZE) {
+            // Note: the replicated wals are rolled by their lsn, e.g. in a frame
             rollFile();
         }
 
         checkFileLock();
+        final long position = this.appendFile.position();
         this.lastWal = this.appendFile.append(this.batchItems);
+        ++this.batches;
+
+        // Group commit: the cheapest sync for the strongest durability in this batch.
+        // Note: keep the auto flush state, which also releases the file lock
+        // periodically in flushUnlock mode.
+        Durability durability = Durability.NONE;
+        for (AppendPayloadItem item: this.batchItems) {
+            if (item.wal != null && item.durability.compareTo(durability) > 0) {
+                durability = item.durability;
+            }
+        }
+        commit(durability, position);
+
+        for (AppendPayloadItem item: this.batchItems) {
+            if (item.wal != null) {
+                item.setResult(item.wal);
+            }
+        }
         this.batchItems.clear();
-        this.appended = true;
+    }
+
+    private void commit(Durability durability, long position) throws IOException {
+        if (!this.appended) {
+            this.appended = true;
+            if (this.syncFlusher && isAutoFlush()) {
+                // Wake up the flusher for the first appended wal since the last flush
+                LockSupport.unpark(this);
+            }
+        }
+        if (durability.isSynced()) {
+            this.sealer.await();
+            this.appendFile.sync(durability == Durability.FSYNC);
+            ++this.syncs;
+            resetDirty();
+            IoUtils.debug("Group commit ok: %s", durability);
+        } else if (durability != Durability.NONE) {
+            this.dirty = true;
+            setDirty(this.appendFile.position() - position);
+        }
+    }
+
+    /** Append the record from the input stream after the batch appended. The failure
+     * of the input stream only fails this item, and the partial record is ended with
+     * the fragment flagged aborted.
+     *
+     * @param item the stream item
+     * @throws IOException if IO error
+     */
+    protected void appendStream(AppendStreamItem item) throws IOException {
+        batchAppend();
+        if (item.isCompleted()) {
+            return;
+        }
+        recovery(item);
+        if (item.isCompleted()) {
+            return;
+        }
+
+        // Note: all fragments of the record are in one file
+        final long size = NioWalFile.streamSize(item.length);
+        long position = this.appendFile.position();
+        if (position >= ROLL_SIZE || (position > 0L && position + size > Wal.LSN_OFFSET_MASK)) {
+            rollFile();
+            position = 0L;
+        }
+        checkFileLock();
+        final SimpleWal wal;
+        try {
+            wal = this.appendFile.append(item.in, item.length);
+        } catch (final IOWalException e) {
+            item.setResult(e);
+            return;
+        }
+        this.lastWal = wal;
+        ++this.batches;
+        commit(item.durability, position);
+        item.setResult(wal);
     }
 
     private void checkFileLock() {
@@ -455,34 +993,54 @@ class NioAppender extends Thread implements AutoCloseable {
                 }
             }
         }
+        if (this.tailState == null && this.waler.getAppendOptions().isTailState()) {
+            File stateFile = this.waler.newFile("append.state");
+            this.tailState = new NioTailState(stateFile);
+        }
 
         FileLock appendFileLock = null;
         boolean failed = true;
         try {
             appendFileLock = acquireFileLock(appendItem);
             if (appendFileLock == null) {
+                if (appendItem.isCompleted()) {
+                    // Timeout or interrupted
+                    return this.lastWal;
+                }
                 throw new IllegalStateException("'append file lock' null");
             }
 
             final File dir = this.waler.getDirectory();
-            for (;;) {
-                File lastFile = lastFile(dir);
-                if (lastFile == null) {
-                    String name = filename(0L);
-                    lastFile = new File(dir, name);
-                }
-                this.appendFile = new NioWalFile(lastFile);
-                final SimpleWal last = this.appendFile.recovery();
-                if (last != null || lastFile.equals(firstFile(dir))) {
-                    this.lastWal = last;
-                    break;
-                }
-                IoUtils.close(this.appendFile);
-                if (!lastFile.delete()) {
-                    throw new IOException("Can't delete file '" + lastFile + "'");
+            final NioTailState tailState = this.tailState;
+            if (tailState == null || !resume(tailState, dir)) {
+                for (;;) {
+                    File lastFile = lastFile(dir);
+                    if (lastFile == null) {
+                        String name = filename(0L);
+                        lastFile = new File(dir, name);
+                    }
+                    this.appendFile = newAppendFile(lastFile);
+                    final SimpleWal last = this.appendFile.recovery();
+                    if (last != null || lastFile.equals(firstFile(dir))) {
+                        this.lastWal = last;
+                        ++this.recoveries;
+                        break;
+                    }
+                    IoUtils.close(this.appendFile);
+                    if (!lastFile.delete()) {
+                        throw new IOException("Can't delete file '" + lastFile + "'");
+                    }
                 }
             }
+            if (tailState != null) {
+                // Note: a crashed lock holder must leave no valid tail state
+                tailState.invalidate();
+            }
 
+            final long lastLsn = (this.lastWal == null? -1L: this.lastWal.getLsn());
+            if (this.releasedLsn != Long.MIN_VALUE && this.releasedLsn != lastLsn) {
+                ++this.fileLockHandoffs;
+            }
             this.fileLock = appendFileLock;
             failed = false;
 
@@ -494,32 +1052,124 @@ class NioAppender extends Thread implements AutoCloseable {
         }
     }
 
-    protected FileLock acquireFileLock(AppendItem<?> appendItem) throws IOException {
-        if (AppendOptions.APPEND_TIMEOUT <= 0) {
-            for (;;) {
-                final FileLock lock = this.lockChan.lock();
-                if (lock != null) {
-                    return lock;
-                }
+    /** Resume the append file from the tail state saved by the last lock holder in
+     * constant time, if the tail state agrees with the last file.
+     *
+     * @param tailState the tail state
+     * @param dir the wal directory
+     * @return true if resumed, otherwise the append file should be recovered
+     * @throws IOException if IO error
+     */
+    protected boolean resume(NioTailState tailState, File dir) throws IOException {
+        if (!tailState.load()) {
+            return false;
+        }
+        final long fileLsn = tailState.getFileLsn();
+        final long nextFileLsn = nextFileLsn(fileLsn);
+        final File file = getFile(dir, fileLsn);
+        if (!file.isFile() || nextFileLsn >= 0L && getFile(dir, nextFileLsn).exists()) {
+            return false;
+        }
+
+        final NioWalFile appendFile = newAppendFile(file);
+        boolean failed = true;
+        try {
+            final long end = tailState.getEnd();
+            final long size = appendFile.size();
+            // Note: the preallocated or mapped tail kept when the file lock released
+            if (size < end || size > end && !appendFile.isZeroTail(end)
+                    || appendFile.getTailOffset(end) != tailState.getTailOffset()) {
+                IoUtils.debug("Tail state disagrees with '%s'", file);
+                return false;
+            }
+            appendFile.resume(end);
+            this.appendFile = appendFile;
+            this.lastWal = new TailWal(tailState.getLastLsn(), (int)end);
+            failed = false;
+            return true;
+        } finally {
+            if (failed) {
+                IoUtils.close(appendFile);
             }
         }
+    }
 
-        for (;;) {
-            final FileLock lock = this.lockChan.tryLock();
-            if (lock != null) {
+    /** Acquire the append file lock: park with an exponential backoff if the lock held
+     * by other processes, instead of spinning on it.
+     *
+     * @param appendItem the append item
+     * @return the file lock, or null if timeout or interrupted, and the item result set
+     * @throws IOException if IO error
+     */
+    protected FileLock acquireFileLock(AppendItem<?> appendItem) throws IOException {
+        FileLock lock = this.lockChan.tryLock();
+        if (lock != null) {
+            return lock;
+        }
+
+        final long start = System.nanoTime();
+        try {
+            if (AppendOptions.APPEND_TIMEOUT <= 0) {
+                do {
+                    lock = this.lockChan.lock();
+                } while (lock == null);
                 return lock;
             }
 
-            if (System.currentTimeMillis() > appendItem.expiryTime) {
-                Exception e = new FileLockTimeoutException("Append timeout when acquire file lock");
-                appendItem.setResult(e);
+            long backoff = FILE_LOCK_BACKOFF_MIN;
+            for (;;) {
+                final long rem = appendItem.expiryTime - System.currentTimeMillis();
+                if (rem < 0L) {
+                    Exception e = new FileLockTimeoutException("Append timeout when acquire file lock");
+                    appendItem.setResult(e);
+                    return null;
+                }
+                LockSupport.parkNanos(this, Math.min(backoff, MILLISECONDS.toNanos(rem) + 1L));
+                if (Thread.interrupted()) {
+                    Thread.currentThread().interrupt();
+                    appendItem.setResult(new InterruptedIOException("Acquire file lock interrupted"));
+                    return null;
+                }
+                lock = this.lockChan.tryLock();
+                if (lock != null) {
+                    return lock;
+                }
+                backoff = Math.min(backoff << 1, FILE_LOCK_BACKOFF_MAX);
             }
+        } finally {
+            ++this.fileLockWaits;
+            this.fileLockWaitTime += System.nanoTime() - start;
         }
     }
 
     private void releaseFileLock(FileLock fileLock) {
+        releaseFileLock(fileLock, false);
+    }
+
+    /** Release the append file lock, and keep the preallocated or mapped tail of the
+     * append file unless trim, which the next lock holder recovers from.
+     *
+     * @param fileLock the append file lock
+     * @param trim truncate the zero tail of the append file, e.g. at close
+     */
+    private void releaseFileLock(FileLock fileLock, boolean trim) {
+        if (fileLock != null && fileLock == this.fileLock) {
+            this.releasedLsn = (this.lastWal == null? -1L: this.lastWal.getLsn());
+        }
         try {
-            IoUtils.close(this.appendFile);
+            final NioWalFile appendFile = this.appendFile;
+            if (trim && appendFile != null && (this.preallocator != null || appendFile.isMmap())
+                    && fileLock != null && fileLock.isValid()) {
+                try {
+                    appendFile.trim();
+                } catch (IOException e) {
+                    IoUtils.error("Trim append file failed", e);
+                }
+            }
+            if (fileLock != null && fileLock == this.fileLock && fileLock.isValid()) {
+                saveTailState(appendFile);
+            }
+            IoUtils.close(appendFile);
             this.appendFile = null;
         } finally {
             IoUtils.close(fileLock);
@@ -527,6 +1177,26 @@ class NioAppender extends Thread implements AutoCloseable {
         }
     }
 
+    /** Save the tail state for the next lock holder, only if the last wal in the append
+     * file and synced, otherwise the tail state keeps invalid since the lock acquired.
+     *
+     * @param appendFile the append file
+     */
+    private void saveTailState(NioWalFile appendFile) {
+        final NioTailState tailState = this.tailState;
+        final SimpleWal last = this.lastWal;
+        if (tailState == null || appendFile == null || this.appended || last == null
+                || fileLsn(last.getLsn()) != appendFile.getLsn()) {
+            return;
+        }
+        try {
+            final long end = appendFile.position();
+            tailState.save(appendFile.getLsn(), end, last.getLsn(), appendFile.getTailOffset(end));
+        } catch (IOException e) {
+            IoUtils.error("Save tail state failed", e);
+        }
+    }
+
     protected void rollFile() throws IOException {
         long curr = this.appendFile.getLsn();
         long next = nextFileLsn(curr);
@@ -538,12 +1208,13 @@ class NioAppender extends Thread implements AutoCloseable {
             throw new IOException("lsn full");
         }
         checkFileLock();
-        this.appendFile.sync();
-        long size = this.appendFile.size();
-        IoUtils.close(this.appendFile);
+        // Note: the sealed file can't have the preallocated tail
+        this.appendFile.trim();
+        long size = this.appendFile.position();
 
         if (next != nextFileLsn(curr)) {
             // Handle skip file
+            IoUtils.close(this.appendFile);
             final File lastFile = this.appendFile.file;
             if (size != 0) {
                 throw new IOException("Can't roll file '" + lastFile + "': size " + size);
@@ -551,19 +1222,47 @@ class NioAppender extends Thread implements AutoCloseable {
             if (!lastFile.delete()) {
                 throw new IOException("Can't delete file '" + lastFile + "'");
             }
+        } else {
+            // Sync and close the sealed file in background, and the dirty state
+            // is reset by the next sync that waits for it
+            this.sealer.seal(this.appendFile);
         }
+        this.appendFile = null;
 
         IoUtils.debug("roll wal file: lsn 0x%x -> 0x%x", curr, next);
         final String name = filename(next);
         final File dir = this.waler.getDirectory();
         final File lastFile = new File(dir, name);
-        this.appendFile = new NioWalFile(lastFile);
-        if (this.appendFile.size() != 0L) {
-            throw new IllegalStateException("'"+ lastFile + "' not a empty file");
+        final NioPreallocator preallocator = this.preallocator;
+        boolean failed = true;
+        try {
+            if (preallocator != null && preallocator.take(lastFile)) {
+                this.appendFile = newAppendFile(lastFile);
+            } else {
+                this.appendFile = newAppendFile(lastFile);
+                if (this.appendFile.size() != 0L) {
+                    throw new IllegalStateException("'"+ lastFile + "' not a empty file");
+                }
+            }
+            failed = false;
+        } finally {
+            if (failed) {
+                // Recovery the append file at next append
+                releaseFileLock(this.fileLock);
+            }
         }
         IoUtils.debug("roll wal file to '%s' in '%s'", name, dir);
     }
 
+    protected NioWalFile newAppendFile(File file) throws IOException {
+        final NioWalFile appendFile = new NioWalFile(file, NioWalFile.BLOCK_CACHE_SIZE, true);
+        final AppendOptions options = this.waler.getAppendOptions();
+        appendFile.setChecksum(options.getChecksum());
+        appendFile.setFrame(options.isBatchFrame(), options.getCompressLevel(), options.getFrameMinBatch());
+        appendFile.setMmap(options.isMmap());
+        return appendFile;
+    }
+
     public boolean isOpen() {
         return this.open;
     }
@@ -588,8 +1287,27 @@ class NioAppender extends Thread implements AutoCloseable {
                     }
                 }
             }
-            releaseFileLock(this.fileLock);
+            final Queue<AppendItem<?>> cq = this.combineQueue;
+            if (cq != null) {
+                Exception closed = new IOException("wal appender closed");
+                for (;;) {
+                    final AppendItem<?> item = cq.poll();
+                    if (item == null) {
+                        break;
+                    }
+                    item.setResult(closed);
+                }
+            }
+            IoUtils.close(this.sealer);
+            releaseFileLock(this.fileLock, true);
+            IoUtils.close(this.preallocator);
+            if (this.syncFlusher && Thread.currentThread() != this) {
+                // Wake up the flusher
+                LockSupport.unpark(this);
+            }
 
+            IoUtils.close(this.tailState);
+            this.tailState = null;
             IoUtils.close(this.lockChan);
             IoUtils.close(this.lockFile);
             this.lockChan = null;
@@ -601,8 +1319,8 @@ class NioAppender extends Thread implements AutoCloseable {
 
     protected void setResults(final Throwable cause) {
         for (AppendPayloadItem item : this.batchItems) {
-            // Note: flushed item is ok
-            if (item.flushed) {
+            // Note: flushed item is ok, but durable item must be synced
+            if (item.flushed && !item.durability.isSynced()) {
                 item.setResult(item.wal);
             } else {
                 item.setResult(cause);
@@ -610,8 +1328,9 @@ class NioAppender extends Thread implements AutoCloseable {
         }
         this.batchItems.clear();
 
+        final Queue<AppendItem<?>> q = (this.appendQueue == null? this.combineQueue: this.appendQueue);
         for (;;) {
-            AppendItem<?> item = this.appendQueue.poll();
+            AppendItem<?> item = (q == null? null: q.poll());
             if (item == null) {
                 break;
             }
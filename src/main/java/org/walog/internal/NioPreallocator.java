@@ -0,0 +1,196 @@
+/**
+ * The MIT License (MIT)
+ * <p>
+ * Copyright (c) 2020 little-pan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.walog.internal;
+
+import org.walog.util.IoUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** The preallocator that creates and zero-fills the next wal file ahead of time in
+ * background, so that rolling the append file only renames the preallocated file.
+ *
+ * <p>The preallocated file is created in the "prealloc" sub-directory, which isn't
+ * watched by the wal readers. The zero tail of the append file is not a wal, and it's
+ * truncated when the file is rolled or the append file lock is released.
+ * </p>
+ *
+ * @author little-pan
+ * @since 2026-10-16
+ */
+class NioPreallocator extends Thread implements AutoCloseable {
+
+    static final AtomicLong ID_GEN = new AtomicLong();
+    static final String DIR_NAME = "prealloc";
+    static final String SUFFIX = ".pre";
+
+    protected final File dir;
+    protected final int fileSize;
+    private File file;
+    private volatile boolean open;
+
+    public NioPreallocator(File walDir, int fileSize) {
+        if (fileSize < 1) {
+            throw new IllegalArgumentException("fileSize: " + fileSize);
+        }
+
+        setDaemon(true);
+        setName("walog-preallocator-" + ID_GEN.getAndIncrement());
+        this.dir = new File(walDir, DIR_NAME);
+        this.fileSize = fileSize;
+        this.open = true;
+    }
+
+    /** Move the preallocated file to the target wal file.
+     *
+     * @param target the target wal file
+     * @return true if moved, or false if no preallocated file ready
+     * @throws IOException if IO error
+     */
+    public boolean take(File target) throws IOException {
+        final File file;
+        synchronized (this) {
+            if (this.file == null || target.exists()) {
+                return false;
+            }
+            file = this.file;
+            this.file = null;
+            // Preallocate the next
+            notifyAll();
+        }
+
+        try {
+            Files.move(file.toPath(), target.toPath());
+            IoUtils.debug("take preallocated file '%s' as '%s'", file, target);
+            return true;
+        } catch (NoSuchFileException e) {
+            // Deleted by other process
+            return false;
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            cleanup();
+            for (;;) {
+                synchronized (this) {
+                    while (isOpen() && this.file != null) {
+                        wait();
+                    }
+                    if (!isOpen()) {
+                        break;
+                    }
+                }
+
+                final File file = allocate();
+                synchronized (this) {
+                    if (file == null || !isOpen()) {
+                        delete(file);
+                        break;
+                    }
+                    this.file = file;
+                }
+            }
+        } catch (InterruptedException e) {
+            // Exit
+        } catch (IOException e) {
+            IoUtils.error("Preallocate wal file failed", e);
+        } finally {
+            close();
+        }
+    }
+
+    protected File allocate() throws IOException {
+        final File dir = this.dir;
+        if (!dir.isDirectory() && !dir.mkdir()) {
+            throw new IOException("Can't create directory: " + dir);
+        }
+
+        final File file = File.createTempFile("walog-", SUFFIX, dir);
+        boolean failed = true;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            final FileChannel chan = raf.getChannel();
+            final ByteBuffer zeros = ByteBuffer.allocateDirect(64 << 10);
+            long pos = 0L;
+            while (pos < this.fileSize) {
+                if (!isOpen()) {
+                    return null;
+                }
+                zeros.clear();
+                zeros.limit((int)Math.min(zeros.capacity(), this.fileSize - pos));
+                pos += chan.write(zeros, pos);
+            }
+            chan.force(true);
+            failed = false;
+            IoUtils.debug("preallocate file '%s': size %d", file, pos);
+            return file;
+        } finally {
+            if (failed) {
+                delete(file);
+            }
+        }
+    }
+
+    protected void cleanup() {
+        // Remove the files left by crashed appenders
+        final File[] files = this.dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.getName().endsWith(SUFFIX)) {
+                delete(file);
+            }
+        }
+    }
+
+    static void delete(File file) {
+        if (file != null && file.exists() && !file.delete()) {
+            IoUtils.info("Can't delete preallocated file '%s'", file);
+        }
+    }
+
+    public boolean isOpen() {
+        return this.open;
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            this.open = false;
+            delete(this.file);
+            this.file = null;
+            notifyAll();
+        }
+    }
+
+}
@@ -0,0 +1,254 @@
+/**
+ * The MIT License (MIT)
+ * <p>
+ * Copyright (c) 2020 little-pan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.walog.internal;
+
+import org.walog.util.IoUtils;
+import org.walog.util.UnitUtils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import static java.lang.Integer.getInteger;
+
+/** The read-ahead window of a sequential reader, e.g. a full scan of the log: the
+ * blocks are read in one big positional read per window, and optionally the next
+ * window is prefetched by a background thread. The window is private to the reader,
+ * and bypasses the block caches, so that a scan doesn't pollute them. The reader
+ * reuses two window buffers: the current window, and the spare one which the next
+ * window is read or prefetched into. The file read ahead is sealed, i.e. not growing,
+ * so that a short window is the end of the file.
+ *
+ * @author little-pan
+ * @since 2026-10-16
+ */
+class NioReadAhead implements AutoCloseable {
+
+    static final String PROP_READ_AHEAD = "org.walog.read.readAhead";
+    static final String PROP_PREFETCH = "org.walog.read.prefetch";
+    /** The window bytes of the sequential iteration, and 0 for no read-ahead by default. */
+    static final int READ_AHEAD;
+    /** Prefetch the next window in background if 1. */
+    static final int PREFETCH = getInteger(PROP_PREFETCH, 0);
+
+    static final int BLOCK_SIZE = NioWalFile.BLOCK_SIZE;
+
+    static {
+        final long n = UnitUtils.parseBytes(System.getProperty(PROP_READ_AHEAD, "0"));
+        if (n < 0L || n > (64 << 20) || n % BLOCK_SIZE != 0) {
+            throw new RuntimeException(PROP_READ_AHEAD + " must be a multiple of "
+                    + BLOCK_SIZE + " and not bigger than 64m");
+        }
+        READ_AHEAD = (int)n;
+    }
+
+    static void checkWindowSize(long windowSize) throws IllegalArgumentException {
+        if (windowSize < BLOCK_SIZE || windowSize > (64 << 20) || windowSize % BLOCK_SIZE != 0) {
+            throw new IllegalArgumentException("windowSize " + windowSize);
+        }
+    }
+
+    private static ExecutorService prefetcher;
+
+    private final FileChannel chan;
+    private final int windowSize;
+    private final boolean prefetch;
+    private ByteBuffer window;
+    private long start;
+    // The buffer of the next window, null if in use by the prefetcher
+    private ByteBuffer spare;
+    // The next window prefetched
+    private Future<ByteBuffer> next;
+    private ByteBuffer nextBuffer;
+    private long nextStart;
+
+    NioReadAhead(FileChannel chan, int windowSize, boolean prefetch) {
+        checkWindowSize(windowSize);
+        this.chan = chan;
+        this.windowSize = windowSize;
+        this.prefetch = prefetch;
+    }
+
+    /** Get the window which covers the page, and read the window from the page if not
+     * covered.
+     *
+     * @param page the page index
+     * @return the window buffer in little endian, and its offset is base()
+     * @throws IOException if IO error, or EOF if the page beyond the file
+     */
+    ByteBuffer getBlock(final int page) throws IOException {
+        final long pos = (long)page * BLOCK_SIZE;
+        final ByteBuffer w = this.window;
+        if (w != null && pos >= this.start) {
+            // Note: the short window is the end of the sealed file
+            if (pos < this.start + w.limit()) {
+                return w;
+            }
+        }
+
+        ByteBuffer buf = null;
+        final Future<ByteBuffer> f = this.next;
+        if (f != null) {
+            final ByteBuffer prefetched = this.nextBuffer;
+            this.next = null;
+            this.nextBuffer = null;
+            if (this.nextStart == pos) {
+                buf = await(f);
+            } else {
+                f.cancel(false);
+            }
+            if (buf == null && !f.isCancelled()) {
+                // Note: the buffer is free after the prefetch done, otherwise the cancelled
+                // prefetcher may be still reading into it
+                this.spare = prefetched;
+            }
+        }
+        if (buf == null || !buf.hasRemaining()) {
+            buf = read(this.chan, pos, (buf == null? spare(): buf));
+        }
+        if (!buf.hasRemaining()) {
+            this.spare = buf;
+            throw new EOFException();
+        }
+        this.spare = this.window;
+        this.window = buf;
+        this.start = pos;
+        if (this.prefetch && buf.limit() == this.windowSize) {
+            prefetch(pos + this.windowSize);
+        }
+        return buf;
+    }
+
+    long base() {
+        return this.start;
+    }
+
+    ByteBuffer window() {
+        return this.window;
+    }
+
+    protected void prefetch(final long pos) {
+        final FileChannel chan = this.chan;
+        final ByteBuffer buf = spare();
+        this.nextStart = pos;
+        this.nextBuffer = buf;
+        this.next = prefetcher().submit(new Callable<ByteBuffer>() {
+            @Override
+            public ByteBuffer call() throws Exception {
+                return read(chan, pos, buf);
+            }
+        });
+    }
+
+    /** Take the spare buffer, or allocate one if none.
+     *
+     * @return the window buffer in little endian
+     */
+    private ByteBuffer spare() {
+        ByteBuffer buf = this.spare;
+        if (buf == null) {
+            buf = ByteBuffer.allocate(this.windowSize).order(NioWalFile.BYTE_ORDER);
+        }
+        this.spare = null;
+        return buf;
+    }
+
+    static ByteBuffer await(Future<ByteBuffer> f) throws IOException {
+        boolean interrupted = false;
+        try {
+            for (;;) {
+                try {
+                    return f.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            // Read again in the caller
+            IoUtils.debug("Prefetch failed: %s", e.getCause());
+            return null;
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** Read the window from the position until EOF.
+     *
+     * @param chan the file channel
+     * @param pos the window position
+     * @param buf the window buffer, cleared before read
+     * @return the window buffer flipped, which is short at EOF
+     * @throws IOException if IO error
+     */
+    static ByteBuffer read(FileChannel chan, long pos, ByteBuffer buf) throws IOException {
+        buf.clear();
+        while (buf.hasRemaining()) {
+            final int n = chan.read(buf, pos + buf.position());
+            if (n == -1) {
+                break;
+            }
+        }
+        buf.flip();
+        return buf;
+    }
+
+    static synchronized ExecutorService prefetcher() {
+        if (prefetcher == null) {
+            prefetcher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    final Thread t = new Thread(r, "walog-prefetcher");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return prefetcher;
+    }
+
+    @Override
+    public void close() {
+        final Future<ByteBuffer> f = this.next;
+        if (f != null) {
+            // Note: not interrupt the prefetcher, which closes the channel
+            f.cancel(false);
+            this.next = null;
+            this.nextBuffer = null;
+        }
+        this.window = null;
+        this.spare = null;
+    }
+
+}
@@ -0,0 +1,195 @@
+/**
+ * The MIT License (MIT)
+ * <p>
+ * Copyright (c) 2020 little-pan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.walog.internal;
+
+import org.walog.util.IoUtils;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** The sealer that syncs and closes the rolled append files in background, so that
+ * the appends continue into the next append file without waiting for the sync of
+ * the sealed file. The appender must wait for the sealed files synced before it
+ * completes a sync, then the sync covers all appended files.
+ *
+ * @author little-pan
+ * @since 2026-10-16
+ */
+class NioSealer extends Thread implements AutoCloseable {
+
+    static final AtomicLong ID_GEN = new AtomicLong();
+
+    private final Queue<NioWalFile> files;
+    // The files in queue or being sealed
+    private int pending;
+    private IOException cause;
+    private volatile boolean open;
+
+    public NioSealer() {
+        setDaemon(true);
+        setName("walog-sealer-" + ID_GEN.getAndIncrement());
+        this.files = new ArrayDeque<>();
+        this.open = true;
+    }
+
+    /** Sync and close the sealed file in background, or in the caller thread if this
+     * sealer not running.
+     *
+     * @param file the sealed file
+     * @throws IOException if IO error, or the previous sealed file sync failed
+     */
+    public void seal(NioWalFile file) throws IOException {
+        synchronized (this) {
+            checkCause();
+            if (isOpen() && isAlive()) {
+                this.files.offer(file);
+                ++this.pending;
+                notifyAll();
+                return;
+            }
+        }
+
+        try {
+            file.sync();
+        } finally {
+            IoUtils.close(file);
+        }
+    }
+
+    /** Wait for all sealed files synced.
+     *
+     * @throws IOException if the sealed file sync failed
+     */
+    public synchronized void await() throws IOException {
+        boolean interrupted = false;
+        try {
+            while (this.pending > 0 && this.cause == null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    // Note: the sync of the sealed file is short
+                    interrupted = true;
+                }
+            }
+            checkCause();
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void checkCause() throws IOException {
+        if (this.cause != null) {
+            throw new IOException("Seal wal file failed", this.cause);
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            for (;;) {
+                final NioWalFile file;
+                synchronized (this) {
+                    while (isOpen() && this.files.isEmpty()) {
+                        wait();
+                    }
+                    file = this.files.poll();
+                    if (file == null) {
+                        break;
+                    }
+                }
+
+                IOException cause = null;
+                try {
+                    file.sync();
+                    IoUtils.debug("seal wal file '%s'", file.getFile());
+                } catch (IOException e) {
+                    IoUtils.error("Seal wal file failed", e);
+                    cause = e;
+                } finally {
+                    IoUtils.close(file);
+                }
+                synchronized (this) {
+                    if (cause != null && this.cause == null) {
+                        this.cause = cause;
+                    }
+                    --this.pending;
+                    notifyAll();
+                }
+            }
+        } catch (InterruptedException e) {
+            // Exit
+        } finally {
+            close();
+        }
+    }
+
+    public boolean isOpen() {
+        return this.open;
+    }
+
+    /** Close this sealer, and seal the files left in the caller thread.
+     */
+    @Override
+    public void close() {
+        for (;;) {
+            final NioWalFile file;
+            synchronized (this) {
+                this.open = false;
+                notifyAll();
+                file = this.files.poll();
+                if (file == null) {
+                    break;
+                }
+            }
+
+            try {
+                file.sync();
+            } catch (IOException e) {
+                IoUtils.error("Seal wal file failed", e);
+            } finally {
+                IoUtils.close(file);
+            }
+            synchronized (this) {
+                --this.pending;
+                notifyAll();
+            }
+        }
+
+        if (Thread.currentThread() != this) {
+            // Wait for the file being sealed in background
+            try {
+                await();
+            } catch (IOException e) {
+                // Ignore: logged
+            }
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+/**
+ * The MIT License (MIT)
+ * <p>
+ * Copyright (c) 2020 little-pan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.walog.internal;
+
+import org.walog.Checksum;
+import org.walog.util.IoUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/** The tail state of the log in a small memory-mapped control file next to the append
+ * lock file: the last append file, its end position, the trailer offset and the lsn of
+ * the last wal. The append file lock holder saves the state before releasing the lock,
+ * and invalidates it after acquiring the lock, so that a crashed holder leaves no valid
+ * state for the next holder.
+ *
+ * @author little-pan
+ * @since 2026-10-16
+ */
+class NioTailState implements AutoCloseable {
+
+    static final int MAGIC = 0x5754534c;
+    static final int SIZE  = 64;
+    // Layout: magic, file lsn, end, last lsn, tail offset, then the checksum of them
+    static final int CHECKSUM_OFFSET = 4 + 8 + 8 + 8 + 4;
+    static final Checksum CHECKSUM = Checksum.CRC32C;
+
+    private final RandomAccessFile raf;
+    private final MappedByteBuffer buffer;
+    // The state loaded
+    private long fileLsn;
+    private long end;
+    private long lastLsn;
+    private int tailOffset;
+
+    public NioTailState(File file) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        boolean failed = true;
+        try {
+            if (raf.length() < SIZE) {
+                raf.setLength(SIZE);
+            }
+            this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0L, SIZE);
+            this.buffer.order(ByteOrder.LITTLE_ENDIAN);
+            this.raf = raf;
+            failed = false;
+        } finally {
+            if (failed) {
+                IoUtils.close(raf);
+            }
+        }
+    }
+
+    /** Load the tail state.
+     *
+     * @return true if a valid state loaded, false if invalidated or corrupted
+     */
+    public boolean load() {
+        final MappedByteBuffer buf = this.buffer;
+        if (buf.getInt(0) != MAGIC || buf.getInt(CHECKSUM_OFFSET) != checksum()) {
+            return false;
+        }
+        this.fileLsn = buf.getLong(4);
+        this.end = buf.getLong(12);
+        this.lastLsn = buf.getLong(20);
+        this.tailOffset = buf.getInt(28);
+        return true;
+    }
+
+    public void save(long fileLsn, long end, long lastLsn, int tailOffset) {
+        final MappedByteBuffer buf = this.buffer;
+        buf.putInt(0, MAGIC);
+        buf.putLong(4, fileLsn);
+        buf.putLong(12, end);
+        buf.putLong(20, lastLsn);
+        buf.putInt(28, tailOffset);
+        buf.putInt(CHECKSUM_OFFSET, checksum());
+    }
+
+    public void invalidate() {
+        this.buffer.putInt(0, 0);
+    }
+
+    public long getFileLsn() {
+        return this.fileLsn;
+    }
+
+    public long getEnd() {
+        return this.end;
+    }
+
+    public long getLastLsn() {
+        return this.lastLsn;
+    }
+
+    public int getTailOffset() {
+        return this.tailOffset;
+    }
+
+    private int checksum() {
+        final ByteBuffer buf = this.buffer.duplicate();
+        buf.position(0).limit(CHECKSUM_OFFSET);
+        return CHECKSUM.compute(buf);
+    }
+
+    @Override
+    public void close() {
+        IoUtils.unmap(this.buffer);
+        IoUtils.close(this.raf);
+    }
+
+}
@@ -32,29 +32,90 @@ import org.walog.util.WalFileUtils;
 import java.io.*;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 import static java.lang.Integer.getInteger;
 import static org.walog.util.WalFileUtils.lastFileLsn;
 
 public class NioWalFile implements  AutoCloseable, Releaseable {
 
+    // The private block cache size of the last file, or each file if the global block
+    // cache disabled
     protected static final String PROP_BLOCK_CACHE_SIZE = "org.walog.block.cacheSize";
     protected static final int BLOCK_CACHE_SIZE = getInteger(PROP_BLOCK_CACHE_SIZE, 16);
+    protected static final String PROP_READ_MMAP = "org.walog.read.mmap";
+    protected static final int READ_MMAP = getInteger(PROP_READ_MMAP, 0);
     protected static final int BLOCK_SIZE = 4 << 10;
     protected static final int WAL_MIN_SIZE = 1 + 8;
+    // Force the slice of the mapping, unsupported before Java 13
+    private static volatile boolean sliceForce = true;
     protected static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+    // The checksum version is stored in the high bits of the wal offset field
+    protected static final int VERSION_SHIFT = 30;
+    protected static final int OFFSET_MASK = Wal.LSN_OFFSET_MASK;
+    // Compressed frame: the frame prefix and members take the lsns of the wals in it
+    protected static final int FRAME_PREFIX = 0xfe;
+    protected static final int FRAME_MEMBER = 0xff;
+    protected static final int FRAME_MAX_WALS = 250;
+    protected static final int FRAME_MAX_SIZE = 1 << 20;
+    protected static final int FRAME_HEAD_SIZE = 1 + 1 + 4 + 4;
+    protected static final int CODEC_NONE = 0;
+    protected static final int CODEC_DEFLATE = 1;
+    // Streamed record: a chain of fragments with their own checksums, and the trailers
+    // of the fragments store the record offset. A record failed to append is ended with
+    // the fragment flagged aborted, so that the file is kept append-only.
+    protected static final int FRAGMENT_PREFIX = 0xfb;
+    protected static final int FRAGMENT_MORE = 0x01;
+    protected static final int FRAGMENT_ABORTED = 0x02;
+    protected static final int FRAGMENT_SIZE = 1 << 20;
+    protected static final int FRAGMENT_HEAD_SIZE = 1 + 1 + 3;
+    private static final List<AppendPayloadItem> NO_ITEMS = Collections.emptyList();
 
     protected final File file;
     protected final long lsn;
     protected final RandomAccessFile raf;
     protected final FileChannel chan;
     protected final LruCache<Integer, Block> readCache;
+    protected final BlockCache blockCache;
+    protected final BlockCache.FileId fileId;
+    // The block last got, which decodes the wals in the same block without a cache lookup
+    private volatile Block lastBlock;
     protected long filePos;
     private final long initSize;
     private ByteBuffer writeBuffer;
+    private Checksum checksum = Checksum.FLETCHER32;
+    // Frame states
+    private boolean batchFrame;
+    private int compressLevel;
+    private int frameMinBatch = 2;
+    private Deflater deflater;
+    private byte[] frameRaw, frameBody;
+    private byte[] fragment;
+    private volatile Frame lastFrame;
+    // Memory-mapped append states
+    private boolean mmap;
+    private MappedByteBuffer mapped;
+    private long mapStart;
+    // The end of the mapping synced, and force only the dirty range after it
+    private int mapSynced;
+    private boolean unmapped;
+    // The known written end of the last file: the end of the wals checked, or the
+    // file size probed if the file has no zero tail
+    private volatile long writtenEnd;
+    private volatile long probedSize = -1L;
+    // Memory-mapped read states of the sealed file
+    private boolean readMmap = (READ_MMAP == 1);
+    private volatile MappedByteBuffer readMap;
+    // The read-ahead window of the private sequential reader
+    private NioReadAhead readAhead;
 
     private volatile boolean open;
     private final AtomicInteger refCount;
@@ -64,16 +125,36 @@ public class NioWalFile implements  AutoCloseable, Releaseable {
     }
 
     public NioWalFile(File file, int blockCacheSize) throws IOException {
+        this(file, blockCacheSize, false);
+    }
+
+    /** Open the wal file, and the append file of the file lock holder is always the
+     * last file, so that the directory isn't listed.
+     *
+     * @param file the wal file
+     * @param blockCacheSize the private block cache size if the global block cache not used
+     * @param appendFile the append file or not
+     * @throws IOException if IO error
+     */
+    protected NioWalFile(File file, int blockCacheSize, boolean appendFile) throws IOException {
         this.file  = file;
         this.lsn   = WalFileUtils.lsn(file.getName());
         this.raf   = new RandomAccessFile(file, "rw");
         this.refCount  = new AtomicInteger();
-        this.readCache = new LruCache<>(blockCacheSize);
 
         boolean failed = true;
         try {
             this.chan = this.raf.getChannel();
-            this.initSize = isLastFile()? -1: this.chan.size();
+            this.initSize = (appendFile || isLastFile())? -1: this.chan.size();
+            // Note: the sealed file is immutable, and its blocks are shared by walers
+            this.blockCache = (this.initSize == -1? null: BlockCache.getInstance());
+            if (this.blockCache == null) {
+                this.fileId = null;
+                this.readCache = new LruCache<>(blockCacheSize);
+            } else {
+                this.fileId = BlockCache.FileId.of(file, this.lsn);
+                this.readCache = null;
+            }
             this.open = true;
             failed = false;
         } finally {
@@ -102,20 +183,182 @@ public class NioWalFile implements  AutoCloseable, Releaseable {
     protected void resetWriteBuffer() {
         ByteBuffer buf = this.writeBuffer;
 
-        if (buf != null) {
+        if (buf != null && !this.mmap) {
             buf.clear();
         }
     }
 
+    /** Append wals by encoding them into the mapped append file directly, instead
+     * of writing a heap buffer into the file channel.
+     *
+     * @param mmap true if append in memory-mapped mode
+     */
+    public void setMmap(boolean mmap) {
+        if (this.mmap != mmap) {
+            unmap();
+            this.writeBuffer = null;
+            this.mmap = mmap;
+        }
+    }
+
+    public boolean isMmap() {
+        return this.mmap;
+    }
+
+    /** Read the sealed file, i.e. not the last file when opened, from the mapping of
+     * the whole file instead of the block cache. The mapping is shared by all readers
+     * of this file, and unmapped when this file closed, e.g. the last reference of it
+     * released after evicted from the wal cache.
+     *
+     * @param readMmap true if read in memory-mapped mode
+     */
+    public synchronized void setReadMmap(boolean readMmap) {
+        this.readMmap = readMmap;
+    }
+
+    public synchronized boolean isReadMmap() {
+        return this.readMmap;
+    }
+
+    /** Read this file in the big windows of the window size, bypassing the block caches,
+     * and the next window prefetched in background if specified. The file must be sealed,
+     * and private to a sequential reader, e.g. the wal iterator in a full scan.
+     *
+     * @param windowSize the read-ahead window size, a multiple of the block size
+     * @param prefetch prefetch the next window or not
+     */
+    public void setReadAhead(int windowSize, boolean prefetch) {
+        IoUtils.close(this.readAhead);
+        this.readAhead = new NioReadAhead(this.chan, windowSize, prefetch);
+    }
+
+    public boolean isReadAhead() {
+        return (this.readAhead != null);
+    }
+
+    /** Map this sealed file once for reads.
+     *
+     * @return the read mapping, or null if not read in memory-mapped mode or not sealed
+     * @throws IOException if IO error
+     */
+    protected MappedByteBuffer getReadMap() throws IOException {
+        final MappedByteBuffer map = this.readMap;
+        if (map != null || this.initSize <= 0L) {
+            return map;
+        }
+
+        synchronized (this) {
+            if (this.readMap == null && this.readMmap && isOpen()) {
+                final MappedByteBuffer m = this.chan.map(FileChannel.MapMode.READ_ONLY, 0L, this.initSize);
+                m.order(BYTE_ORDER);
+                this.readMap = m;
+            }
+            return this.readMap;
+        }
+    }
+
+    /** Map the append file for the appending bytes from the position.
+     *
+     * @param pos the append position
+     * @param need the max bytes to append
+     * @throws IOException if IO error
+     */
+    protected void map(final long pos, final int need) throws IOException {
+        final MappedByteBuffer mapped = this.mapped;
+        final long start = this.mapStart;
+        if (mapped != null && pos >= start && pos + need <= start + mapped.capacity()) {
+            final int p = (int)(pos - start);
+            this.writeBuffer.position(p);
+            this.mapSynced = Math.min(this.mapSynced, p);
+            return;
+        }
+
+        unmap();
+        // Note: the mapping grows the append file to the roll size as preallocated
+        long size = Math.max(WalFileUtils.ROLL_SIZE - pos, BLOCK_SIZE << 8);
+        size = Math.min(Math.max(size, need), Integer.MAX_VALUE);
+        this.mapped = this.chan.map(FileChannel.MapMode.READ_WRITE, pos, size);
+        this.mapStart = pos;
+        this.mapSynced = 0;
+        this.writeBuffer = this.mapped.duplicate();
+        this.writeBuffer.order(BYTE_ORDER);
+    }
+
+    protected void unmap() {
+        final MappedByteBuffer mapped = this.mapped;
+        if (mapped != null) {
+            this.mapped = null;
+            this.writeBuffer = null;
+            // The unmapped dirty pages are synced by the channel
+            this.unmapped = true;
+            IoUtils.unmap(mapped);
+        }
+    }
+
     public long getLsn() {
         return this.lsn;
     }
 
+    /** The checksum of the wals appended, and the wals read are checked by
+     * the checksum version stored in each wal.
+     *
+     * @return the append checksum
+     */
+    public Checksum getChecksum() {
+        return this.checksum;
+    }
+
+    public void setChecksum(Checksum checksum) {
+        if (checksum == null) {
+            throw new NullPointerException("checksum");
+        }
+        this.checksum = checksum;
+    }
+
     public long size() throws IOException {
         long size = this.initSize;
         return  (size == -1? this.chan.size(): size);
     }
 
+    /** The logical size of the append file, i.e. the end of the last wal, which is
+     * less than the file size if the file is preallocated.
+     *
+     * @return the end position of the append file
+     * @throws IOException if IO error
+     */
+    public long position() throws IOException {
+        return this.chan.position();
+    }
+
+    /** Truncate the preallocated tail of the append file.
+     *
+     * @throws IOException if IO error
+     */
+    public void trim() throws IOException {
+        // Note: truncate the mapped file is illegal on some platforms
+        unmap();
+        final long pos = this.chan.position();
+        if (this.chan.size() > pos) {
+            this.chan.truncate(pos);
+        }
+    }
+
+    /** Append the successive wals of an append batch into a frame, which has one
+     * checksum for all wals in it.
+     *
+     * @param batchFrame append the uncompressed frames if not compress
+     * @param compressLevel the deflate level 1-9, or 0 if not compress
+     * @param minBatch the minimum wals of a frame
+     */
+    public void setFrame(boolean batchFrame, int compressLevel, int minBatch) {
+        if (compressLevel < 0 || compressLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("compress level: " + compressLevel);
+        }
+        this.batchFrame = batchFrame;
+        this.compressLevel = compressLevel;
+        this.frameMinBatch = Math.max(minBatch, 2);
+    }
+
     public boolean isLastFile() {
         final File dir = getFile().getParentFile();
         final String filename = getFilename();
@@ -123,59 +366,215 @@ public class NioWalFile implements  AutoCloseable, Releaseable {
         return (getLsn() == lastLsn);
     }
 
-    protected byte getByte(final int offset) throws IOException {
-        final int pageOffset = offset / BLOCK_SIZE;
-        final int blockOffset= offset % BLOCK_SIZE;
-        Block block = this.readCache.get(pageOffset);
+    /** Get the block of the page from the global block cache or the private read cache,
+     * or read it from this file.
+     * The block is shared by readers, so that it must be accessed by the absolute
+     * index, and it's less than a full block at the end of this file. The read
+     * mapping of the whole file is returned instead if this file read mapped, or the
+     * read-ahead window covering the page if this file read ahead.
+     *
+     * @param page the page index of the block
+     * @return the block buffer in little endian
+     * @throws IOException if IO error, or EOF if the page beyond this file
+     */
+    protected ByteBuffer getBlock(final int page) throws IOException {
+        final MappedByteBuffer map = getReadMap();
+        if (map != null) {
+            return map;
+        }
+        final NioReadAhead readAhead = this.readAhead;
+        if (readAhead != null) {
+            return readAhead.getBlock(page);
+        }
+        final Block last = this.lastBlock;
         ByteBuffer buf;
+        if (last != null && last.page == page && (buf = last.buffer()) != null) {
+            return buf;
+        }
+        final BlockCache cache = this.blockCache;
+        if (cache == null) {
+            final Block block = this.readCache.get(page);
+            if (block != null && (buf = block.buffer()) != null) {
+                this.lastBlock = block;
+                return buf;
+            }
+        } else if ((buf = cache.get(this.fileId, page)) != null) {
+            this.lastBlock = new Block(page, buf);
+            return buf;
+        }
 
-        if (block == null || (buf = block.buffer()) == null) {
-            final int pos = pageOffset * BLOCK_SIZE;
-            final int rem = (int)(size() - pos);
-            if (blockOffset +1 > rem) {
+        final long pos = (long)page * BLOCK_SIZE;
+        final long rem = size() - pos;
+        if (rem <= 0L) {
+            throw new EOFException();
+        }
+        if (cache != null && rem >= BLOCK_SIZE) {
+            buf = cache.allocate();
+        } else {
+            buf = ByteBuffer.allocate((int)Math.min(BLOCK_SIZE, rem)).order(BYTE_ORDER);
+        }
+        IoUtils.readFully(this.chan, buf, pos);
+        if (isCacheable(page, buf)) {
+            final Block block = new Block(page, buf);
+            if (cache == null) {
+                this.readCache.put(page, block);
+            } else {
+                // Note: kept as the last block even if not admitted into the cache
+                cache.put(this.fileId, page, buf);
+            }
+            this.lastBlock = block;
+        }
+        return buf;
+    }
+
+    /** The offset in this file of the first byte in the block.
+     *
+     * @param buf the block from getBlock()
+     * @param offset an offset in the block
+     * @return the block offset, 0 if the block is the read mapping, or the window
+     * offset if the block is the read-ahead window
+     */
+    protected int blockBase(final ByteBuffer buf, final int offset) {
+        if (buf == this.readMap) {
+            return 0;
+        }
+        final NioReadAhead readAhead = this.readAhead;
+        if (readAhead != null && buf == readAhead.window()) {
+            return (int)readAhead.base();
+        }
+        return (offset - offset % BLOCK_SIZE);
+    }
+
+    protected byte getByte(final int offset) throws IOException {
+        final ByteBuffer buf = getBlock(offset / BLOCK_SIZE);
+        final int i = offset - blockBase(buf, offset);
+        if (i >= buf.limit()) {
+            throw new EOFException();
+        }
+        return buf.get(i);
+    }
+
+    /** Read the little-endian int of the bytes at the offset, which may span blocks.
+     *
+     * @param offset the offset in this file
+     * @param bytes the bytes of the int, 1 to 4
+     * @return the int value
+     * @throws IOException if IO error
+     */
+    protected int getInt(final int offset, final int bytes) throws IOException {
+        int value = 0;
+        for (int k = 0; k < bytes; ) {
+            final ByteBuffer buf = getBlock((offset + k) / BLOCK_SIZE);
+            final int lim = buf.limit();
+            int i = offset + k - blockBase(buf, offset + k);
+            if (i >= lim) {
                 throw new EOFException();
             }
-            buf = ByteBuffer.allocate(Math.min(BLOCK_SIZE, rem));
-            IoUtils.readFully(this.chan, buf, pos);
-            if (buf.limit() == BLOCK_SIZE) {
-                this.readCache.put(pageOffset, new Block(buf));
+            for (; k < bytes && i < lim; ++k, ++i) {
+                value |= (buf.get(i) & 0xff) << (k << 3);
+            }
+        }
+        return value;
+    }
+
+    /** Check whether the block read can be cached: it must be a full block, and
+     * the block of the last file must be before the known written end of the file,
+     * for the tail may be preallocated, mapped or still being written.
+     *
+     * @param page the page index of the block
+     * @param buf the block buffer
+     * @return true if the block is cacheable
+     * @throws IOException if IO error
+     */
+    protected boolean isCacheable(final int page, final ByteBuffer buf) throws IOException {
+        if (buf.limit() != BLOCK_SIZE) {
+            return false;
+        }
+        if (this.initSize != -1) {
+            return true;
+        }
+        final long end = (long)(page + 1) * BLOCK_SIZE;
+        return (end <= this.writtenEnd || end <= probeWrittenEnd());
+    }
+
+    /** Probe the written end of the last file when its size changed: the appender
+     * writes sequentially, so the bytes before the size have been written if the file
+     * has no zero tail, i.e. not preallocated or mapped.
+     *
+     * @return the known written end
+     * @throws IOException if IO error
+     */
+    private long probeWrittenEnd() throws IOException {
+        final long size = this.chan.size();
+        if (size != this.probedSize) {
+            this.probedSize = size;
+            if (size >= WAL_MIN_SIZE && !isZeroTail(size - 8)) {
+                setWrittenEnd(size);
             }
         }
+        return this.writtenEnd;
+    }
 
-        return buf.get(blockOffset);
+    private void setWrittenEnd(final long end) {
+        if (end > this.writtenEnd) {
+            this.writtenEnd = end;
+        }
+    }
+
+    /** Invalidate the cached blocks from the offset, e.g. the bytes after it discarded.
+     *
+     * @param offset the offset in this file
+     */
+    protected void invalidate(final long offset) {
+        this.lastBlock = null;
+        if (this.writtenEnd > offset) {
+            this.writtenEnd = offset;
+        }
+        this.probedSize = -1L;
+        final BlockCache cache = this.blockCache;
+        if (cache != null) {
+            cache.invalidate(this.fileId, (int)(offset / BLOCK_SIZE));
+        } else {
+            this.readCache.clear();
+        }
     }
 
     protected void getBytes(final int offset, byte[] buffer) throws IOException {
         getBytes(offset, buffer, 0, buffer.length);
     }
 
-    protected void getBytes(final int offset, byte[] buffer, int i, int len)
+    protected void getBytes(int offset, byte[] buffer, int i, int len)
             throws IOException {
-        final int pageOffset = offset / BLOCK_SIZE;
-        final int blockOffset= offset % BLOCK_SIZE;
-        Block block = this.readCache.get(pageOffset);
-        ByteBuffer buf;
-
-        if (block == null || (buf = block.buffer()) == null) {
-            final int pos = pageOffset * BLOCK_SIZE;
-            final int rem = (int)(size() - pos);
-            if (blockOffset + len > rem) {
+        while (len > 0) {
+            final ByteBuffer buf = getBlock(offset / BLOCK_SIZE);
+            final int p = offset - blockBase(buf, offset);
+            // Note: a short block re-read if the file grows
+            final int n = Math.min(buf.limit() - p, len);
+            if (n <= 0) {
                 throw new EOFException();
             }
-            buf = ByteBuffer.allocate(Math.min(BLOCK_SIZE, rem));
-            IoUtils.readFully(this.chan, buf, pos);
-            if (buf.limit() == BLOCK_SIZE) {
-                this.readCache.put(pageOffset, new Block(buf));
-            }
+            copyBytes(buf, p, buffer, i, n);
+            offset += n;
+            i += n;
+            len -= n;
         }
+    }
 
-        final int lim = buf.limit();
-        int n = Math.min(lim - blockOffset, len);
-        for (int j = blockOffset, k = blockOffset + n; j < k; ++j) {
-            buffer[i++] = buf.get(j);
-        }
-        if (n < len) {
-            getBytes(offset + n, buffer, i, len - n);
+    /** Copy bytes from the shared block or mapping in bulk, without changing its position.
+     *
+     * @param buf the block buffer
+     * @param p the index in the block
+     * @param dst the destination array
+     * @param i the destination index
+     * @param n the bytes to copy
+     */
+    static void copyBytes(ByteBuffer buf, int p, byte[] dst, int i, int n) {
+        if (buf.hasArray()) {
+            System.arraycopy(buf.array(), buf.arrayOffset() + p, dst, i, n);
+        } else {
+            final ByteBuffer dup = buf.duplicate();
+            dup.position(p);
+            dup.get(dst, i, n);
         }
     }
 
@@ -197,45 +596,403 @@ public class NioWalFile implements  AutoCloseable, Releaseable {
             return null;
         }
 
-        // wal format: Length(var-int), Data, Offset(int), Data checksum(int)
-        int length, i = 0;
-        final int prefix = getByte(offset + i++) & 0xff;
+        // wal format: Length(var-int), Data, Version(2 bits) | Offset(30 bits), Data checksum(int)
+        // Note: decode in the current block, and only look up the next block when crossing it
+        ByteBuffer buf = getBlock(offset / BLOCK_SIZE);
+        int base = blockBase(buf, offset);
+        if (offset - base >= buf.limit()) {
+            throw new EOFException();
+        }
+        final int prefix = buf.get(offset - base) & 0xff;
+        if (prefix == FRAME_PREFIX || prefix == FRAME_MEMBER) {
+            return getFramed(offset, prefix);
+        }
+        if (prefix == FRAGMENT_PREFIX) {
+            final StreamWal wal = getStreamed(offset, true);
+            // Skip the aborted record
+            return (wal.isAborted()? get(wal.nextOffset()): wal);
+        }
+        final int length, n;
         if (prefix < 0xfb) {
-            length = prefix;
+            n = 0;
         } else if (prefix == 0xfc) {
-            length  =  getByte(offset + i++) & 0xff;
-            length |= (getByte(offset + i++) & 0xff) << 8;
+            n = 2;
         } else if (prefix == 0xfd) {
-            length  =  getByte(offset + i++) & 0xff;
-            length |= (getByte(offset + i++) & 0xff) << 8;
-            length |= (getByte(offset + i++) & 0xff) << 16;
+            n = 3;
         } else {
             final String message = "Illegal prefix of wal length: " + Integer.toHexString(prefix);
             throw new CorruptWalException(message, this.file.getAbsolutePath(), offset);
         }
+        int pos = offset + 1;
+        if (n == 0) {
+            length = prefix;
+        } else if (pos + n <= base + buf.limit()) {
+            final int i = pos - base;
+            int len = (buf.get(i) & 0xff) | (buf.get(i + 1) & 0xff) << 8;
+            if (n == 3) {
+                len |= (buf.get(i + 2) & 0xff) << 16;
+            }
+            length = len;
+        } else {
+            length = getInt(pos, n);
+        }
+        pos += n;
 
         final byte[] data = new byte[length];
-        getBytes(offset + i, data);
-        i += data.length;
-
-        final byte[] intArr = new byte[4];
-        final ByteBuffer intBuf = wrapBuffer(intArr);
-        getBytes(offset + i, intArr);
-        i += intArr.length;
-        final int offsetStored = intBuf.getInt(0);
-        if (offsetStored != offset) {
-            throw new CorruptWalException("Offset not matched", this.file.getAbsolutePath(), offset);
+        for (int i = 0; i < length; ) {
+            if (pos >= base + buf.limit()) {
+                // Next block, or re-read the short block if the file grows
+                buf = getBlock(pos / BLOCK_SIZE);
+                base = blockBase(buf, pos);
+                if (pos >= base + buf.limit()) {
+                    throw new EOFException();
+                }
+            }
+            final int k = Math.min(base + buf.limit() - pos, length - i);
+            copyBytes(buf, pos - base, data, i, k);
+            pos += k;
+            i += k;
         }
 
-        getBytes(offset + i, intArr);
-        final int chkSum = intBuf.getInt(0);
-        if (chkSum != IoUtils.getFletcher32(data)) {
-            throw new CorruptWalException("Checksum error", this.file.getAbsolutePath(), offset);
+        final int offsetStored, chkSum;
+        if (pos + 8 <= base + buf.limit()) {
+            offsetStored = buf.getInt(pos - base);
+            chkSum = buf.getInt(pos - base + 4);
+        } else {
+            offsetStored = getInt(pos, 4);
+            chkSum = getInt(pos + 4, 4);
         }
+        check(offset, offsetStored, chkSum, data, 0, data.length, pos + 8);
 
         return new SimpleWal(this.lsn | offset, (byte)prefix, data);
     }
 
+    protected void check(int offset, int offsetStored, int chkSum, byte[] data, int i, int len,
+                         long end) throws IOException {
+        final int version = offsetStored >>> VERSION_SHIFT;
+        if (chkSum == 0 && version == 0) {
+            // Not written yet, e.g. the preallocated tail: the Fletcher-32 checksum never be 0,
+            // and the version of other checksums is never 0
+            throw new EOFException();
+        }
+        if ((offsetStored & OFFSET_MASK) != offset) {
+            throw new CorruptWalException("Offset not matched", this.file.getAbsolutePath(), offset);
+        }
+        final Checksum checksum;
+        try {
+            checksum = Checksum.valueOf(version);
+        } catch (IllegalArgumentException e) {
+            throw new CorruptWalException(e.getMessage(), this.file.getAbsolutePath(), offset);
+        }
+        if (chkSum != checksum.compute(data, i, len)) {
+            throw new CorruptWalException("Checksum error", this.file.getAbsolutePath(), offset);
+        }
+        // The bytes before the end of the wal checked have been written
+        setWrittenEnd(end);
+    }
+
+    /** Open the input stream of the specified offset wal: the fragments of a streamed
+     * record are read one by one, instead of the whole record.
+     *
+     * @param offset the wal offset in this file
+     * @return the wal input stream, or null if offset bigger than or equals to size of this file
+     * @throws IOException if IO error
+     */
+    public InputStream openStream(final int offset) throws IOException {
+        if (offset + WAL_MIN_SIZE > size()) {
+            return null;
+        }
+
+        final int prefix = getByte(offset) & 0xff;
+        if (prefix == FRAGMENT_PREFIX) {
+            final StreamWal wal = scanStreamed(offset);
+            if (wal.isAborted()) {
+                return openStream(wal.nextOffset());
+            }
+            return new NioWalInputStream(this, offset, true);
+        }
+        final SimpleWal wal = get(offset);
+        return (wal == null? null: new ByteArrayInputStream(wal.getData()));
+    }
+
+    /** Read the streamed record, and check all fragments of it.
+     *
+     * @param offset the record offset
+     * @param keep keep the record data, otherwise only check it, e.g. in recovery
+     * @return the streamed wal, or the aborted wal without data
+     * @throws IOException if IO error
+     */
+    protected StreamWal getStreamed(final int offset, final boolean keep) throws IOException {
+        final NioWalInputStream in = new NioWalInputStream(this, offset, false);
+        try {
+            final long lsn = this.lsn | offset;
+            if (!keep) {
+                long length = 0L;
+                for (long n; (n = in.skip(Long.MAX_VALUE)) > 0L; ) {
+                    length += n;
+                }
+                return new StreamWal(lsn, (int)length, in.position() - offset, in.isAborted());
+            }
+
+            final StreamWal wal = scanStreamed(offset);
+            if (wal.isAborted()) {
+                return wal;
+            }
+            final byte[] data = new byte[wal.length];
+            for (int i = 0, n; i < data.length; i += n) {
+                n = in.read(data, i, data.length - i);
+                if (n == -1) {
+                    throw new EOFException();
+                }
+            }
+            return new StreamWal(lsn, data);
+        } finally {
+            in.close();
+        }
+    }
+
+    /** Scan the fragment heads of the streamed record for its length and stored size,
+     * and check the last fragment if the record aborted.
+     *
+     * @param offset the record offset
+     * @return the streamed wal without data
+     * @throws IOException if IO error
+     */
+    protected StreamWal scanStreamed(final int offset) throws IOException {
+        long length = 0L;
+        int pos = offset, last, head;
+        do {
+            head = getFragmentHead(pos);
+            final int n = head & 0xffffff;
+            if (n > FRAGMENT_SIZE) {
+                throw new CorruptWalException("Illegal fragment length", this.file.getAbsolutePath(), pos);
+            }
+            length += n;
+            last = pos;
+            pos += FRAGMENT_HEAD_SIZE + n + 8;
+            if (pos > OFFSET_MASK) {
+                throw new CorruptWalException("Illegal fragment length", this.file.getAbsolutePath(), offset);
+            }
+        } while ((head >>> 24 & FRAGMENT_MORE) != 0);
+
+        final boolean aborted = ((head >>> 24 & FRAGMENT_ABORTED) != 0);
+        if (aborted) {
+            // Note: the aborted record is skipped only if ended
+            final int n = head & 0xffffff;
+            getFragment(offset, last, new byte[n], n);
+        }
+        return new StreamWal(this.lsn | offset, (int)length, pos - offset, aborted);
+    }
+
+    /** Read the fragment head.
+     *
+     * @param pos the fragment position
+     * @return the flags in the high byte, and the data length in the low 3 bytes
+     * @throws IOException if IO error
+     */
+    protected int getFragmentHead(final int pos) throws IOException {
+        // fragment format: Prefix(0xfb), Flags(byte: 1 more, 2 aborted), Length(3 bytes), Data,
+        // Version(2 bits) | Record offset(30 bits), Data checksum(int)
+        final ByteBuffer head = ByteBuffer.allocate(FRAGMENT_HEAD_SIZE);
+        readFully(pos, head);
+        final int prefix = head.get(0) & 0xff;
+        if (prefix != FRAGMENT_PREFIX) {
+            if (prefix == 0) {
+                // Not written yet
+                throw new EOFException();
+            }
+            throw new CorruptWalException("Fragment not found", this.file.getAbsolutePath(), pos);
+        }
+        int length = head.get(2) & 0xff;
+        length |= (head.get(3) & 0xff) << 8;
+        length |= (head.get(4) & 0xff) << 16;
+
+        return ((head.get(1) & 0xff) << 24 | length);
+    }
+
+    /** Read the fragment data, then check it.
+     *
+     * @param offset the record offset
+     * @param pos the fragment position
+     * @param buffer the data buffer
+     * @param length the data length
+     * @throws IOException if IO error
+     */
+    protected void getFragment(final int offset, final int pos, byte[] buffer, int length)
+            throws IOException {
+        final ByteBuffer data = ByteBuffer.wrap(buffer, 0, length);
+        readFully(pos + FRAGMENT_HEAD_SIZE, data);
+        final ByteBuffer tail = wrapBuffer(new byte[8]);
+        readFully(pos + FRAGMENT_HEAD_SIZE + length, tail);
+        check(offset, tail.getInt(0), tail.getInt(4), buffer, 0, length,
+                pos + FRAGMENT_HEAD_SIZE + length + 8L);
+    }
+
+    // Note: read the big fragments bypass the block cache
+    private void readFully(final long pos, final ByteBuffer buffer) throws IOException {
+        if (pos + buffer.remaining() > size()) {
+            throw new EOFException();
+        }
+        final MappedByteBuffer map = getReadMap();
+        if (map != null) {
+            final ByteBuffer src = map.duplicate();
+            src.limit((int)pos + buffer.remaining()).position((int)pos);
+            buffer.put(src);
+            return;
+        }
+        IoUtils.readFully(this.chan, buffer, pos);
+    }
+
+    /** The stored size of the streamed record.
+     *
+     * @param length the record length
+     * @return the size of the fragments
+     */
+    static long streamSize(final long length) {
+        final long n = Math.max((length + FRAGMENT_SIZE - 1) / FRAGMENT_SIZE, 1L);
+        return (length + n * (FRAGMENT_HEAD_SIZE + 8));
+    }
+
+    protected SimpleWal getFramed(final int offset, final int prefix) throws IOException {
+        int frameOffset = offset;
+        if (prefix == FRAME_MEMBER) {
+            // Find the frame prefix
+            final int min = Math.max(offset - FRAME_MAX_WALS, 0);
+            int b;
+            do {
+                if (--frameOffset < min) {
+                    throw new CorruptWalException("Frame not found", this.file.getAbsolutePath(), offset);
+                }
+                b = getByte(frameOffset) & 0xff;
+            } while (b == FRAME_MEMBER);
+            if (b != FRAME_PREFIX) {
+                throw new CorruptWalException("Frame not found", this.file.getAbsolutePath(), offset);
+            }
+        }
+
+        Frame frame = this.lastFrame;
+        if (frame == null || frame.offset != frameOffset) {
+            frame = readFrame(frameOffset);
+            this.lastFrame = frame;
+        }
+        return frame.get(offset - frameOffset);
+    }
+
+    protected Frame readFrame(final int offset) throws IOException {
+        // frame format: Prefix(0xfe), Member(0xff) * (Count - 1), Count(byte), Codec(byte: 0 none, 1 deflate),
+        // Raw length(int), Data length(int), Data: the wals of Length(var-int) and Data,
+        // Version(2 bits) | Offset(30 bits), Checksum(int) of Count to Data
+        final String path = this.file.getAbsolutePath();
+        int i = offset + 1, b;
+        while ((b = getByte(i) & 0xff) == FRAME_MEMBER) {
+            if (++i - offset >= FRAME_MAX_WALS) {
+                throw new CorruptWalException("Frame too many members", path, offset);
+            }
+        }
+        final int count = b;
+        if (count != i - offset) {
+            throw new CorruptWalException("Frame count not matched", path, offset);
+        }
+
+        final byte[] head = new byte[FRAME_HEAD_SIZE];
+        final ByteBuffer headBuf = wrapBuffer(head);
+        getBytes(i, head);
+        final int codec = head[1];
+        final int rawLength = headBuf.getInt(2);
+        final int compLength = headBuf.getInt(6);
+        if (codec != CODEC_NONE && codec != CODEC_DEFLATE) {
+            throw new CorruptWalException("Unknown frame codec: " + codec, path, offset);
+        }
+        if (codec == CODEC_NONE && rawLength != compLength) {
+            throw new CorruptWalException("Frame raw length not matched", path, offset);
+        }
+        if (rawLength < 0 || compLength < 0 || compLength > OFFSET_MASK - i) {
+            throw new CorruptWalException("Illegal frame length", path, offset);
+        }
+
+        final long end = (long)i + FRAME_HEAD_SIZE + compLength + 8;
+        if (end > size()) {
+            throw new EOFException();
+        }
+        final byte[] frame = new byte[(int)end - offset];
+        final ByteBuffer frameBuf = wrapBuffer(frame);
+        getBytes(offset, frame);
+        final int tail = frame.length - 8;
+        check(offset, frameBuf.getInt(tail), frameBuf.getInt(tail + 4), frame, count, tail - count,
+                end);
+
+        // Decompress then decode the wals
+        final byte[] raw;
+        final int rawOffset;
+        if (codec == CODEC_NONE) {
+            raw = frame;
+            rawOffset = count + FRAME_HEAD_SIZE;
+        } else {
+            raw = inflate(frame, count + FRAME_HEAD_SIZE, compLength, rawLength, offset);
+            rawOffset = 0;
+        }
+        final int rawEnd = rawOffset + rawLength;
+
+        final byte[][] wals = new byte[count][];
+        int p = rawOffset;
+        for (int j = 0; j < count; ++j) {
+            if (p >= rawEnd) {
+                throw new CorruptWalException("Frame wal not found", path, offset);
+            }
+            int length;
+            final int pfx = raw[p++] & 0xff;
+            if (pfx < 0xfb) {
+                length = pfx;
+            } else if (pfx == 0xfc && p + 2 <= rawEnd) {
+                length  =  raw[p++] & 0xff;
+                length |= (raw[p++] & 0xff) << 8;
+            } else if (pfx == 0xfd && p + 3 <= rawEnd) {
+                length  =  raw[p++] & 0xff;
+                length |= (raw[p++] & 0xff) << 8;
+                length |= (raw[p++] & 0xff) << 16;
+            } else {
+                throw new CorruptWalException("Illegal frame wal length", path, offset);
+            }
+            if (length > rawEnd - p) {
+                throw new CorruptWalException("Illegal frame wal length", path, offset);
+            }
+            wals[j] = Arrays.copyOfRange(raw, p, p + length);
+            p += length;
+        }
+        if (p != rawEnd) {
+            throw new CorruptWalException("Frame raw length not matched", path, offset);
+        }
+
+        return new Frame(this.lsn, offset, (int)end, wals, frame);
+    }
+
+    protected byte[] inflate(byte[] data, int i, int length, int rawLength, int offset)
+            throws IOException {
+        final String path = this.file.getAbsolutePath();
+        final byte[] raw = new byte[rawLength];
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, i, length);
+            int n = 0;
+            while (n < rawLength) {
+                final int k = inflater.inflate(raw, n, rawLength - n);
+                if (k == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += k;
+            }
+            if (n != rawLength) {
+                throw new CorruptWalException("Frame raw length not matched", path, offset);
+            }
+        } catch (DataFormatException e) {
+            throw new CorruptWalException("Frame data error: " + e.getMessage(), path, offset);
+        } finally {
+            inflater.end();
+        }
+
+        return raw;
+    }
+
     private ByteBuffer wrapBuffer(byte[] buffer) {
         ByteBuffer buf = ByteBuffer.wrap(buffer);
         buf.order(BYTE_ORDER);
@@ -243,14 +1000,33 @@ public class NioWalFile implements  AutoCloseable, Releaseable {
     }
 
     public SimpleWal append(List<AppendPayloadItem> items) throws IOException {
-        this.filePos = this.chan.size();
-        this.chan.position(this.filePos);
-
+        // Note: the file size may be bigger than the end of the last wal if preallocated
+        this.filePos = this.chan.position();
         final int n = items.size();
+        if (this.mmap) {
+            // The mapping never exhausted when appending the batch, including the gaps
+            // of the aborted records filled
+            long end = this.filePos;
+            for (AppendPayloadItem item : items) {
+                end = Math.max(end, recordOffset(item)) + appendSize(item);
+            }
+            final long need = end - this.filePos;
+            if (end > Wal.LSN_OFFSET_MASK) {
+                throw new IOException(this.file.getAbsolutePath() + " full");
+            }
+            map(this.filePos, (int)need);
+        }
+
         int i = 0, flushIndex = 0;
         while (i < n) {
             AppendPayloadItem item = items.get(i);
             if (!item.isCompleted()) {
+                final int m = frameSize(items, i);
+                if (m > 0) {
+                    flushIndex = appendFrame(items, i, m, flushIndex);
+                    i += m;
+                    continue;
+                }
                 flushIndex = append(items, item, i, flushIndex);
             }
             ++i;
@@ -258,25 +1034,417 @@ public class NioWalFile implements  AutoCloseable, Releaseable {
 
         SimpleWal last = null;
         flush(items, i, flushIndex);
+        if (this.mmap) {
+            this.chan.position(this.mapStart + this.writeBuffer.position());
+        }
         for (AppendPayloadItem item : items) {
             if (item.wal != null) {
-                item.setResult(last = item.wal);
+                last = item.wal;
             }
         }
 
         return last;
     }
 
+    /** The max bytes of the item appended: the frame is smaller than the wals in it.
+     *
+     * @param item the append item
+     * @return the max bytes to append
+     */
+    protected static int appendSize(AppendPayloadItem item) {
+        if (item.isCompleted()) {
+            return 0;
+        }
+        final SimpleWal wal = item.wal;
+        if (item instanceof AppendWalItem && wal instanceof FrameWal) {
+            final FrameWal frameWal = (FrameWal)wal;
+            return (frameWal.index == 0 && frameWal.frame != null? frameWal.frame.length: 0);
+        }
+        if (item instanceof AppendWalItem && wal instanceof StreamWal) {
+            return (int)streamSize(item.payload.length);
+        }
+        final int length = (item.payload == null? item.buffer.remaining(): item.payload.length);
+        return SimpleWal.headSize(SimpleWal.lengthPrefix(length)) + length + 8;
+    }
+
+    /** Count the successive wals from the specified index that can be compressed into a frame.
+     *
+     * @param items the batch items
+     * @param i the start index
+     * @return the wals of the frame, or 0 if not compress
+     */
+    protected int frameSize(List<AppendPayloadItem> items, final int i) {
+        if (!this.batchFrame && this.compressLevel == 0) {
+            return 0;
+        }
+
+        final int n = Math.min(items.size(), i + FRAME_MAX_WALS);
+        int j = i, size = 0;
+        for (; j < n; ++j) {
+            final AppendPayloadItem item = items.get(j);
+            final byte[] payload = item.payload;
+            // Note: the buffer wal isn't copied, and the replicated wal must keep its lsn
+            if (payload == null || item.isCompleted() || item instanceof AppendWalItem) {
+                break;
+            }
+            size += SimpleWal.headSize(SimpleWal.lengthPrefix(payload)) + payload.length;
+            if (size > FRAME_MAX_SIZE) {
+                break;
+            }
+        }
+
+        final int m = j - i;
+        return (m >= this.frameMinBatch? m: 0);
+    }
+
+    protected int appendFrame(List<AppendPayloadItem> items, final int i, final int m, int flushIndex)
+            throws IOException {
+        // Build the frame
+        int rawLength = 0, plainSize = 0;
+        for (int j = i; j < i + m; ++j) {
+            final byte[] payload = items.get(j).payload;
+            final int length = SimpleWal.headSize(SimpleWal.lengthPrefix(payload)) + payload.length;
+            rawLength += length;
+            plainSize += length + 8;
+        }
+        byte[] body = this.frameBody;
+        int bodyLength = FRAME_HEAD_SIZE;
+        final int codec;
+        if (this.compressLevel == 0) {
+            // Uncompressed batch frame
+            codec = CODEC_NONE;
+            bodyLength += rawLength;
+            if (body == null || body.length < bodyLength) {
+                this.frameBody = body = new byte[Math.max(bodyLength, BLOCK_SIZE)];
+            }
+            putFrameWals(items, i, m, body, FRAME_HEAD_SIZE);
+        } else {
+            codec = CODEC_DEFLATE;
+            byte[] raw = this.frameRaw;
+            if (raw == null || raw.length < rawLength) {
+                this.frameRaw = raw = new byte[Math.max(rawLength, BLOCK_SIZE)];
+            }
+            putFrameWals(items, i, m, raw, 0);
+
+            // Compress
+            Deflater deflater = this.deflater;
+            if (deflater == null) {
+                this.deflater = deflater = new Deflater(this.compressLevel);
+            } else {
+                deflater.reset();
+            }
+            deflater.setInput(raw, 0, rawLength);
+            deflater.finish();
+            if (body == null || body.length < FRAME_HEAD_SIZE + rawLength / 2) {
+                this.frameBody = body = new byte[Math.max(FRAME_HEAD_SIZE + rawLength / 2, BLOCK_SIZE)];
+            }
+            while (!deflater.finished()) {
+                if (bodyLength == body.length) {
+                    this.frameBody = body = Arrays.copyOf(body, body.length << 1);
+                }
+                bodyLength += deflater.deflate(body, bodyLength, body.length - bodyLength);
+            }
+        }
+        final int compLength = bodyLength - FRAME_HEAD_SIZE;
+        final int frameSize = m + bodyLength + 8;
+        if (frameSize >= plainSize) {
+            // Frame not smaller, e.g. not compressible
+            for (int j = i; j < i + m; ++j) {
+                flushIndex = append(items, items.get(j), j, flushIndex);
+            }
+            return flushIndex;
+        }
+        if (this.filePos + frameSize > Wal.LSN_OFFSET_MASK) {
+            throw new IOException(this.file.getAbsolutePath() + " full");
+        }
+
+        // Write the frame
+        final int offset = (int)this.filePos;
+        final ByteBuffer bodyBuf = wrapBuffer(body);
+        body[0] = (byte)m;
+        body[1] = (byte)codec;
+        bodyBuf.putInt(2, rawLength);
+        bodyBuf.putInt(6, compLength);
+        final Checksum checksum = this.checksum;
+        final int chkSum = checksum.compute(body, 0, bodyLength);
+
+        final ByteBuffer buffer = getWriteBuffer();
+        final byte[] members = new byte[m];
+        Arrays.fill(members, (byte)FRAME_MEMBER);
+        members[0] = (byte)FRAME_PREFIX;
+        flushIndex = write(items, i, flushIndex, buffer, members);
+        bodyBuf.limit(bodyLength);
+        flushIndex = write(items, i, flushIndex, buffer, bodyBuf);
+        final int version = checksum.getVersion() << VERSION_SHIFT;
+        flushIndex = writeInt(items, i, flushIndex, buffer, version | offset);
+        flushIndex = writeInt(items, i, flushIndex, buffer, chkSum);
+        this.filePos += frameSize;
+
+        final int frameEnd = offset + frameSize;
+        for (int j = 0; j < m; ++j) {
+            final AppendPayloadItem item = items.get(i + j);
+            item.wal = new FrameWal(this.lsn | (offset + j), item.payload, offset, j, m, frameEnd, null);
+        }
+
+        return flushIndex;
+    }
+
+    private static void putFrameWals(List<AppendPayloadItem> items, final int i, final int m,
+                                     byte[] buffer, int p) {
+        for (int j = i; j < i + m; ++j) {
+            final byte[] payload = items.get(j).payload;
+            final int length = payload.length;
+            final byte prefix = SimpleWal.lengthPrefix(length);
+            final int headSize = SimpleWal.headSize(prefix);
+            if (headSize == 1) {
+                buffer[p++] = (byte)length;
+            } else {
+                buffer[p++] = prefix;
+                buffer[p++] = (byte)(length);
+                buffer[p++] = (byte)(length >> 8);
+                if (headSize == 4) {
+                    buffer[p++] = (byte)(length >> 16);
+                }
+            }
+            System.arraycopy(payload, 0, buffer, p, length);
+            p += length;
+        }
+    }
+
+    /** Append the frame wal from wal master node: the first wal writes the frame bytes,
+     * and the others only check the frame written.
+     */
+    protected int appendFrameWal(List<AppendPayloadItem> items, AppendWalItem item, int i, int flushIndex)
+            throws IOException {
+        final FrameWal wal = (FrameWal)item.wal;
+        long fileLsn = WalFileUtils.fileLsn(wal.getLsn());
+        if (this.lsn != fileLsn) {
+            String error = String.format("File lsn %x of wal from master " +
+                    "not matched with the append file lsn %x", fileLsn, this.lsn);
+            throw new WalException(error);
+        }
+
+        if (wal.index == 0) {
+            final byte[] frame = wal.frame;
+            if (frame == null) {
+                throw new WalException("Frame of wal from master not found");
+            }
+            int walOffset = wal.getOffset();
+            if (this.filePos != walOffset) {
+                String error = String.format("File offset %d of wal from master " +
+                        "not matched with the append file offset %d", walOffset, this.filePos);
+                throw new WalException(error);
+            }
+            if (this.filePos + frame.length > Wal.LSN_OFFSET_MASK) {
+                throw new IOException(this.file.getAbsolutePath() + " full");
+            }
+            flushIndex = write(items, i, flushIndex, getWriteBuffer(), frame);
+            this.filePos += frame.length;
+        } else if (this.filePos != wal.frameEnd) {
+            String error = String.format("Frame end %d of wal from master " +
+                    "not matched with the append file offset %d", wal.frameEnd, this.filePos);
+            throw new WalException(error);
+        }
+
+        return flushIndex;
+    }
+
+    /** Append the streamed record from wal master node in the same fragments.
+     */
+    protected int appendStreamWal(List<AppendPayloadItem> items, AppendWalItem item, int i, int flushIndex)
+            throws IOException {
+        final SimpleWal wal = item.wal;
+        long fileLsn = WalFileUtils.fileLsn(wal.getLsn());
+        if (this.lsn != fileLsn) {
+            String error = String.format("File lsn %x of wal from master " +
+                    "not matched with the append file lsn %x", fileLsn, this.lsn);
+            throw new WalException(error);
+        }
+        final int offset = (int)this.filePos;
+        int walOffset = wal.getOffset();
+        if (offset != walOffset) {
+            String error = String.format("File offset %d of wal from master " +
+                    "not matched with the append file offset %d", walOffset, offset);
+            throw new WalException(error);
+        }
+
+        final byte[] data = item.payload;
+        if (this.filePos + streamSize(data.length) > Wal.LSN_OFFSET_MASK) {
+            throw new IOException(this.file.getAbsolutePath() + " full");
+        }
+        flushIndex = appendFragments(items, i, flushIndex, new ByteArrayInputStream(data), data.length);
+        item.wal = new StreamWal(this.lsn | offset, data);
+
+        return flushIndex;
+    }
+
+    /** Append the record of the specified length from the input stream: the record is
+     * written as a chain of fragments, so that the record can be bigger than a wal, and
+     * isn't loaded into the heap at once. If read the stream failed, the record is ended
+     * with the fragment flagged aborted instead of rolled back, for the fragments written
+     * may be read or cached by others.
+     *
+     * @param in the record input stream
+     * @param length the record length
+     * @return the streamed wal, which payload isn't kept
+     * @throws IOWalException if read the stream failed
+     * @throws IOException if IO error
+     */
+    public SimpleWal append(InputStream in, int length) throws IOException {
+        final long start = this.chan.position();
+        this.filePos = start;
+        final long size = streamSize(length);
+        if (start + size > Wal.LSN_OFFSET_MASK) {
+            throw new IOException(this.file.getAbsolutePath() + " full");
+        }
+        if (this.mmap) {
+            map(start, (int)size);
+        }
+
+        // Note: the aborted record fits in the size of the record
+        IOWalException aborted = null;
+        try {
+            appendFragments(NO_ITEMS, 0, 0, in, length);
+        } catch (final IOWalException e) {
+            appendAborted(NO_ITEMS, 0, 0, (int)start, FRAGMENT_HEAD_SIZE + 8);
+            aborted = e;
+        }
+        flush();
+        if (this.mmap) {
+            this.chan.position(this.mapStart + this.writeBuffer.position());
+        }
+        if (aborted != null) {
+            throw aborted;
+        }
+
+        return new StreamWal(this.lsn | (int)start, length);
+    }
+
+    protected int appendFragments(List<AppendPayloadItem> items, final int i, int flushIndex,
+                                  InputStream in, final int length) throws IOException {
+        final int offset = (int)this.filePos;
+        final Checksum checksum = this.checksum;
+        final int version = checksum.getVersion() << VERSION_SHIFT;
+        final ByteBuffer buffer = getWriteBuffer();
+        final byte[] head = new byte[FRAGMENT_HEAD_SIZE];
+        byte[] fragment = this.fragment;
+        final int n = Math.min(length, FRAGMENT_SIZE);
+        if (fragment == null || fragment.length < n) {
+            this.fragment = fragment = new byte[n];
+        }
+
+        int rem = length;
+        do {
+            final int m = Math.min(rem, FRAGMENT_SIZE);
+            readStream(in, fragment, m);
+            rem -= m;
+            final int chkSum = checksum.compute(fragment, 0, m);
+            head[0] = (byte)FRAGMENT_PREFIX;
+            head[1] = (byte)(rem > 0? FRAGMENT_MORE: 0);
+            head[2] = (byte)(m);
+            head[3] = (byte)(m >> 8);
+            head[4] = (byte)(m >> 16);
+            flushIndex = write(items, i, flushIndex, buffer, head);
+            flushIndex = write(items, i, flushIndex, buffer, ByteBuffer.wrap(fragment, 0, m));
+            flushIndex = writeInt(items, i, flushIndex, buffer, version | offset);
+            flushIndex = writeInt(items, i, flushIndex, buffer, chkSum);
+            this.filePos += FRAGMENT_HEAD_SIZE + m + 8;
+        } while (rem > 0);
+
+        return flushIndex;
+    }
+
+    /** Append the aborted record of the specified size after the fragments written: the
+     * zero fragments are ended with the empty or zero fragment flagged aborted.
+     *
+     * @param offset the record offset
+     * @param size the bytes to append, not less than the size of an empty fragment
+     */
+    protected int appendAborted(List<AppendPayloadItem> items, final int i, int flushIndex,
+                                final int offset, long size) throws IOException {
+        final Checksum checksum = this.checksum;
+        final int version = checksum.getVersion() << VERSION_SHIFT;
+        final ByteBuffer buffer = getWriteBuffer();
+        final int empty = FRAGMENT_HEAD_SIZE + 8;
+        final byte[] head = new byte[FRAGMENT_HEAD_SIZE];
+        final byte[] zeros = new byte[(int)Math.min(size - empty, FRAGMENT_SIZE)];
+
+        do {
+            final long rem = size - empty;
+            // Note: leave the room for the last fragment at least
+            final int m = (int)(rem > FRAGMENT_SIZE? Math.min(FRAGMENT_SIZE, rem - empty): rem);
+            size -= empty + m;
+            final int chkSum = checksum.compute(zeros, 0, m);
+            head[0] = (byte)FRAGMENT_PREFIX;
+            head[1] = (byte)(size > 0? FRAGMENT_MORE: FRAGMENT_ABORTED);
+            head[2] = (byte)(m);
+            head[3] = (byte)(m >> 8);
+            head[4] = (byte)(m >> 16);
+            flushIndex = write(items, i, flushIndex, buffer, head);
+            flushIndex = write(items, i, flushIndex, buffer, ByteBuffer.wrap(zeros, 0, m));
+            flushIndex = writeInt(items, i, flushIndex, buffer, version | offset);
+            flushIndex = writeInt(items, i, flushIndex, buffer, chkSum);
+            this.filePos += empty + m;
+        } while (size > 0);
+
+        return flushIndex;
+    }
+
+    /** The offset of the replicated wal that starts a record in this file.
+     *
+     * @param item the append item
+     * @return the record offset, or -1 if not a record from wal master node
+     */
+    protected int recordOffset(AppendPayloadItem item) {
+        if (!(item instanceof AppendWalItem) || item.isCompleted()) {
+            return -1;
+        }
+        final SimpleWal wal = item.wal;
+        if (wal instanceof FrameWal && ((FrameWal)wal).index != 0) {
+            return -1;
+        }
+        if (WalFileUtils.fileLsn(wal.getLsn()) != this.lsn) {
+            return -1;
+        }
+        return wal.getOffset();
+    }
+
+    private static void readStream(InputStream in, byte[] buffer, final int length) {
+        try {
+            for (int i = 0, n; i < length; i += n) {
+                n = in.read(buffer, i, length - i);
+                if (n == -1) {
+                    throw new EOFException("Append stream ended");
+                }
+            }
+        } catch (final IOException e) {
+            throw new IOWalException("Read append stream failed", e);
+        }
+    }
+
     protected int append(List<AppendPayloadItem> items, AppendPayloadItem item, int i, int flushIndex)
             throws IOException {
+        // Fill the gap of the aborted records, which wal master node skips, so that
+        // the replicated wals keep their offsets
+        final long gap = recordOffset(item) - this.filePos;
+        if (gap >= FRAGMENT_HEAD_SIZE + 8) {
+            flushIndex = appendAborted(items, i, flushIndex, (int)this.filePos, gap);
+        }
+        if (item instanceof AppendWalItem && item.wal instanceof FrameWal) {
+            return appendFrameWal(items, (AppendWalItem)item, i, flushIndex);
+        }
+        if (item instanceof AppendWalItem && item.wal instanceof StreamWal) {
+            return appendStreamWal(items, (AppendWalItem)item, i, flushIndex);
+        }
 
         final byte[] payload = item.payload;
-        final int length = payload.length;
-        final byte prefix = SimpleWal.lengthPrefix(payload);
+        final ByteBuffer source = item.buffer;
+        final int length = (payload == null? source.remaining(): payload.length);
+        final byte prefix = SimpleWal.lengthPrefix(length);
         final int headSize = SimpleWal.headSize(prefix);
 
-        // wal format: Length(var-int), Data, Offset(int), Data checksum(int)
-        final int walSize  = headSize + payload.length + 8;
+        // wal format: Length(var-int), Data, Version(2 bits) | Offset(30 bits), Data checksum(int)
+        final int walSize  = headSize + length + 8;
         if (this.filePos + walSize > Wal.LSN_OFFSET_MASK) {
             throw new IOException(this.file.getAbsolutePath() + " full");
         }
@@ -302,16 +1470,30 @@ public class NioWalFile implements  AutoCloseable, Releaseable {
             }
         }
 
-        final int chkSum = IoUtils.getFletcher32(payload);
+        final int chkSum;
+        final Checksum checksum = this.checksum;
         final ByteBuffer buffer = getWriteBuffer();
-        flushIndex = writeHeader(items, i, flushIndex, buffer, headSize, prefix, length);
-        flushIndex = write(items, i, flushIndex, buffer, payload);
-        flushIndex = writeInt(items, i, flushIndex, buffer, offset);
+        if (payload == null) {
+            chkSum = checksum.compute(source);
+            flushIndex = writeHeader(items, i, flushIndex, buffer, headSize, prefix, length);
+            // Note: keep the position of the caller's buffer
+            flushIndex = write(items, i, flushIndex, buffer, source.duplicate());
+        } else {
+            chkSum = checksum.compute(payload);
+            flushIndex = writeHeader(items, i, flushIndex, buffer, headSize, prefix, length);
+            flushIndex = write(items, i, flushIndex, buffer, payload);
+        }
+        final int version = checksum.getVersion() << VERSION_SHIFT;
+        flushIndex = writeInt(items, i, flushIndex, buffer, version | offset);
         flushIndex = writeInt(items, i, flushIndex, buffer, chkSum);
         this.filePos += walSize;
 
         final long lsn = this.lsn | offset;
-        item.wal = new SimpleWal(lsn, prefix, payload);
+        if (payload == null) {
+            item.wal = new BufferWal(lsn, length);
+        } else {
+            item.wal = new SimpleWal(lsn, prefix, payload);
+        }
 
         return flushIndex;
     }
@@ -319,17 +1501,20 @@ public class NioWalFile implements  AutoCloseable, Releaseable {
     private int writeHeader(List<AppendPayloadItem> items, final int i, int flushIndex,
                              ByteBuffer buffer, int headSize, byte pfx, int length) throws IOException {
 
+        if (buffer.remaining() < headSize) {
+            flushIndex = flush(items, i, flushIndex);
+        }
         if (headSize == 1) {
-            flushIndex = write(items, i, flushIndex, buffer, (byte)length);
+            buffer.put((byte)length);
         } else if (headSize == 3) {
-            flushIndex = write(items, i, flushIndex, buffer, pfx);
-            flushIndex = write(items, i, flushIndex, buffer, (byte)(length));
-            flushIndex = write(items, i, flushIndex, buffer, (byte)(length >> 8));
+            buffer.put(pfx);
+            buffer.put((byte)(length));
+            buffer.put((byte)(length >> 8));
         } else if (headSize == 4) {
-            flushIndex = write(items, i, flushIndex, buffer, pfx);
-            flushIndex = write(items, i, flushIndex, buffer, (byte)(length));
-            flushIndex = write(items, i, flushIndex, buffer, (byte)(length >> 8));
-            flushIndex = write(items, i, flushIndex, buffer, (byte)(length >> 16));
+            buffer.put(pfx);
+            buffer.put((byte)(length));
+            buffer.put((byte)(length >> 8));
+            buffer.put((byte)(length >> 16));
         } else {
             throw new IllegalArgumentException("headSize " + headSize);
         }
@@ -349,26 +1534,75 @@ public class NioWalFile implements  AutoCloseable, Releaseable {
 
     protected int write(List<AppendPayloadItem> items, int i, int flushIndex,
                          ByteBuffer buffer, byte[] bytes) throws IOException {
-        for (final byte b : bytes) {
-            flushIndex = write(items, i, flushIndex, buffer, b);
+        int offset = 0, length = bytes.length;
+
+        if (length >= BLOCK_SIZE) {
+            // Big payload: write buffered bytes and the payload in one gathering write
+            ByteBuffer tail = ByteBuffer.wrap(bytes, offset, length);
+            flushIndex = flush(items, i, flushIndex, tail);
+            return flushIndex;
+        }
+
+        while (length > 0) {
+            if (!buffer.hasRemaining()) {
+                flushIndex = flush(items, i, flushIndex);
+            }
+            final int n = Math.min(buffer.remaining(), length);
+            buffer.put(bytes, offset, n);
+            offset += n;
+            length -= n;
         }
+
         return flushIndex;
     }
 
-    protected int write(List<AppendPayloadItem> items, final int i, int flushIndex,
-                         ByteBuffer buffer, byte b) throws IOException {
-        if (!buffer.hasRemaining()) {
-            flushIndex = flush(items, i, flushIndex);
+    protected int write(List<AppendPayloadItem> items, int i, int flushIndex,
+                        ByteBuffer buffer, ByteBuffer source) throws IOException {
+        if (source.remaining() >= BLOCK_SIZE) {
+            // Big payload: write buffered bytes and the source in one gathering write
+            return flush(items, i, flushIndex, source);
+        }
+
+        final int limit = source.limit();
+        while (source.hasRemaining()) {
+            if (!buffer.hasRemaining()) {
+                flushIndex = flush(items, i, flushIndex);
+            }
+            final int n = Math.min(buffer.remaining(), source.remaining());
+            source.limit(source.position() + n);
+            buffer.put(source);
+            source.limit(limit);
         }
-        buffer.put(b);
 
         return flushIndex;
     }
 
+    protected int flush(List<AppendPayloadItem> items, final int i, int flushIndex, ByteBuffer tail)
+            throws IOException {
+        final ByteBuffer buffer = this.writeBuffer;
+        if (this.mmap) {
+            buffer.put(tail);
+            return flushed(items, i, flushIndex);
+        }
+        final ByteBuffer[] srcs = {buffer, tail};
+
+        buffer.flip();
+        while (tail.hasRemaining()) {
+            this.chan.write(srcs);
+        }
+        resetWriteBuffer();
+
+        return flushed(items, i, flushIndex);
+    }
+
     protected int flush(List<AppendPayloadItem> items, final int i, int flushIndex)
             throws IOException {
 
         flush();
+        return flushed(items, i, flushIndex);
+    }
+
+    private int flushed(List<AppendPayloadItem> items, final int i, int flushIndex) {
         while (flushIndex < i) {
             AppendPayloadItem item = items.get(flushIndex);
             if (item.wal != null) {
@@ -382,6 +1616,10 @@ public class NioWalFile implements  AutoCloseable, Releaseable {
 
     protected void flush() throws IOException {
         final ByteBuffer buffer = this.writeBuffer;
+        if (this.mmap) {
+            // Written into the page cache
+            return;
+        }
         final int p = buffer.position();
         final int n = p / BLOCK_SIZE;
         int lim = BLOCK_SIZE;
@@ -404,6 +1642,7 @@ public class NioWalFile implements  AutoCloseable, Releaseable {
             }
         }
 
+        setWrittenEnd(this.chan.position());
         resetWriteBuffer();
     }
 
@@ -411,43 +1650,79 @@ public class NioWalFile implements  AutoCloseable, Releaseable {
         final long size = this.size();
         if (size < WAL_MIN_SIZE) {
             this.chan.truncate(0L);
+            invalidate(0L);
             return null;
         }
 
         // Check integrity
         int offset;
-        // 1. First back forward
+        // 1. First back forward: the last wal ends at the file size, or before the zero
+        // tail if the file preallocated, which is normal and not logged as an error
+        final boolean zeroTail = isZeroTail(size - 8);
+        final long end = (zeroTail? dataEnd(size): size);
+        if (zeroTail && end == 0L) {
+            IoUtils.debug("walog empty preallocated file '%s'", this.file);
+            this.chan.position(0L);
+            return null;
+        }
         {
-            final byte[] buf = new byte[4];
-            final int p = (int)(size - 8);
-            getBytes(p, buf);
-            offset = wrapBuffer(buf).getInt(0);
-            try {
-                SimpleWal wal = get(offset);
+            Exception cause = null;
+            SimpleWal wal = null;
+            long tail = end;
+            // Note: the trailer of the last wal is never 0, and the last non-zero byte in it
+            for (final long last = Math.min(zeroTail? end + 7: end, size); tail <= last; ++tail) {
+                try {
+                    wal = recoverTail(tail);
+                    if (wal != null) {
+                        break;
+                    }
+                } catch (CorruptWalException | EOFException e) {
+                    cause = e;
+                }
+            }
+            if (wal == null && zeroTail) {
+                // E.g. a zero block in the last wal
+                IoUtils.debug("walog last wal not found before the zero tail in '%s', recovery ...",
+                        this.file);
+            } else if (wal == null) {
+                if (cause == null) {
+                    cause = new EOFException(String.format("No last wal at 0x%x", end));
+                }
+                IoUtils.error("walog exit abnormally, recovery ...", cause);
+            } else if (!isAborted(wal)) {
                 IoUtils.debug("walog last lsn 0x%x in '%s'", wal.getLsn(), this.file);
-                this.chan.position(size);
+                this.chan.position(tail);
                 return wal;
-            } catch (CorruptWalException |EOFException e) {
-                IoUtils.error("walog exit abnormally, recovery ...", e);
-                offset = 0;
             }
+            // The aborted tail or corrupted: scan for the last wal
+            offset = 0;
         }
         // 2. Otherwise forward
         SimpleWal wal = null;
         try {
             while (offset < size) {
-                final SimpleWal next = get(offset);
+                final SimpleWal next = recover(offset);
                 if (next == null) {
                     break;
                 }
-                wal = next;
-                offset = wal.nextOffset();
+                if (!isAborted(next)) {
+                    wal = next;
+                }
+                offset = next.nextOffset();
             }
             this.chan.truncate(offset);
             this.chan.position(offset);
+            invalidate(offset);
 
             return wal;
         } catch (final EOFException e) {
+            if (zeroTail && isZeroTail(offset)) {
+                // Keep the preallocated tail
+                IoUtils.debug("walog stops at the zero tail 0x%x in '%s'", offset, this.file);
+                this.chan.position(offset);
+                invalidate(offset);
+                return wal;
+            }
             final String message;
             if (wal == null) {
                 message = String.format("walog corrupted and recovery from 0x%x in '%s'",
@@ -459,12 +1734,172 @@ public class NioWalFile implements  AutoCloseable, Releaseable {
             IoUtils.error(message, e);
             this.chan.truncate(offset);
             this.chan.position(offset);
+            invalidate(offset);
             return wal;
         }
     }
 
+    /** Recover the last wal by the offset field in the trailer at the specified end.
+     *
+     * @param end the end of the last wal
+     * @return the last wal, or null if no wal ends at the end
+     * @throws IOException if IO error or the wal corrupted
+     */
+    private SimpleWal recoverTail(final long end) throws IOException {
+        if (end < WAL_MIN_SIZE) {
+            return null;
+        }
+        final byte[] buf = new byte[4];
+        getBytes((int)(end - 8), buf);
+        final int offset = wrapBuffer(buf).getInt(0) & OFFSET_MASK;
+        SimpleWal wal = recover(offset);
+        if (wal instanceof FrameWal) {
+            final FrameWal first = (FrameWal)wal;
+            wal = get(first.frameOffset + first.count - 1);
+        }
+        if (wal == null || wal.nextOffset() != end) {
+            return null;
+        }
+        return wal;
+    }
+
+    /** Whether no wal written at the specified position, i.e. the zero tail of the
+     * preallocated or mapped file: the first 8 bytes of a wal are never all 0.
+     *
+     * @param pos the position
+     * @return true if the bytes from the position are 0
+     * @throws IOException if IO error
+     */
+    public boolean isZeroTail(final long pos) throws IOException {
+        final long size = size();
+        if (pos < 0L || pos >= size) {
+            return false;
+        }
+        final ByteBuffer buf = ByteBuffer.allocate((int)Math.min(8L, size - pos));
+        IoUtils.readFully(this.chan, buf, pos);
+        for (int i = buf.limit() - 1; i >= 0; --i) {
+            if (buf.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Find the end of the written bytes before the zero tail by bisecting the blocks.
+     * It may stop before a zero block in a wal, then the recovery scans forward.
+     *
+     * @param size the file size
+     * @return the position after the last non-zero byte
+     * @throws IOException if IO error
+     */
+    private long dataEnd(final long size) throws IOException {
+        final ByteBuffer buf = ByteBuffer.allocate(BLOCK_SIZE);
+        // Invariant: the block lo has a non-zero byte, and the block hi is zero
+        long lo = -1L, hi = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        while (hi - lo > 1L) {
+            final long mid = (lo + hi) >>> 1;
+            if (lastNonZero(buf, mid * BLOCK_SIZE, size) >= 0) {
+                lo = mid;
+            } else {
+                hi = mid;
+            }
+        }
+        if (lo < 0L) {
+            return 0L;
+        }
+        return lo * BLOCK_SIZE + lastNonZero(buf, lo * BLOCK_SIZE, size) + 1;
+    }
+
+    private int lastNonZero(final ByteBuffer buf, final long pos, final long size)
+            throws IOException {
+        buf.clear();
+        buf.limit((int)Math.min(BLOCK_SIZE, size - pos));
+        IoUtils.readFully(this.chan, buf, pos);
+        for (int i = buf.limit() - 1; i >= 0; --i) {
+            if (buf.get(i) != 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** Read the offset field in the trailer of the last wal, i.e. the checksum version
+     * and the offset of the last wal or frame, which identifies the tail cheaply.
+     *
+     * @param end the end of the last wal
+     * @return the offset field
+     * @throws IOException if IO error
+     */
+    public int getTailOffset(final long end) throws IOException {
+        final ByteBuffer buf = ByteBuffer.allocate(4).order(BYTE_ORDER);
+        IoUtils.readFully(this.chan, buf, end - 8);
+        return buf.getInt(0);
+    }
+
+    /** Resume appending at the end of the last wal without recovery, and the caller
+     * must ensure that the end is the tail of this file.
+     *
+     * @param end the end of the last wal
+     * @throws IOException if IO error
+     */
+    public void resume(final long end) throws IOException {
+        this.chan.position(end);
+    }
+
+    private static boolean isAborted(SimpleWal wal) {
+        return (wal instanceof StreamWal && ((StreamWal)wal).isAborted());
+    }
+
+    private SimpleWal recover(final int offset) throws IOException {
+        if (offset + WAL_MIN_SIZE <= size() && (getByte(offset) & 0xff) == FRAGMENT_PREFIX) {
+            // Note: not load the big record
+            return getStreamed(offset, false);
+        }
+        return get(offset);
+    }
+
     public void sync() throws IOException {
-        this.chan.force(false);
+        sync(false);
+    }
+
+    public void sync(boolean metaData) throws IOException {
+        final MappedByteBuffer mapped = this.mapped;
+        if (mapped == null) {
+            this.chan.force(metaData);
+        } else {
+            final int end = (int)(this.chan.position() - this.mapStart);
+            if (end > this.mapSynced) {
+                force(mapped, this.mapSynced, end);
+                this.mapSynced = end;
+            }
+            if (metaData || this.unmapped) {
+                this.chan.force(metaData);
+            }
+        }
+        this.unmapped = false;
+    }
+
+    /** Force the dirty range of the mapping, instead of the whole mapping up to the
+     * roll size: the slice of the mapping is forced, or the whole mapping if the slice
+     * can't be forced, e.g. before Java 13.
+     *
+     * @param mapped the mapping
+     * @param from the start of the dirty range
+     * @param to the end of the dirty range
+     */
+    private static void force(final MappedByteBuffer mapped, final int from, final int to) {
+        if (sliceForce) {
+            final ByteBuffer dirty = mapped.duplicate();
+            dirty.limit(to);
+            dirty.position(from);
+            try {
+                ((MappedByteBuffer)dirty.slice()).force();
+                return;
+            } catch (UnsupportedOperationException | ClassCastException e) {
+                sliceForce = false;
+            }
+        }
+        mapped.force();
     }
 
     public boolean isOpen() {
@@ -473,6 +1908,22 @@ public class NioWalFile implements  AutoCloseable, Releaseable {
 
     @Override
     public void close()  {
+        final Deflater deflater = this.deflater;
+        if (deflater != null) {
+            deflater.end();
+            this.deflater = null;
+        }
+        unmap();
+        final MappedByteBuffer readMap;
+        synchronized (this) {
+            readMap = this.readMap;
+            this.readMap = null;
+            this.readMmap = false;
+        }
+        if (readMap != null) {
+            IoUtils.unmap(readMap);
+        }
+        IoUtils.close(this.readAhead);
         IoUtils.close(this.readCache);
         IoUtils.close(this.chan);
         IoUtils.close(this.raf);
@@ -497,4 +1948,33 @@ public class NioWalFile implements  AutoCloseable, Releaseable {
         }
     }
 
+    static class Frame {
+
+        final long lsn;
+        final int offset;
+        final int end;
+        final byte[][] wals;
+        final byte[] frame;
+
+        Frame(long lsn, int offset, int end, byte[][] wals, byte[] frame) {
+            this.lsn = lsn;
+            this.offset = offset;
+            this.end = end;
+            this.wals = wals;
+            this.frame = frame;
+        }
+
+        SimpleWal get(int index) throws IOException {
+            final int count = this.wals.length;
+            if (index >= count) {
+                throw new EOFException();
+            }
+            // Note: the frame bytes are only needed by the replication from the first wal
+            final byte[] frame = (index == 0? this.frame: null);
+            return new FrameWal(this.lsn | (this.offset + index), this.wals[index],
+                    this.offset, index, count, this.end, frame);
+        }
+
+    }
+
 }
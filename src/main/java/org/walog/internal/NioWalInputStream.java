@@ -0,0 +1,166 @@
+/**
+ * The MIT License (MIT)
+ * <p>
+ * Copyright (c) 2020 little-pan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.walog.internal;
+
+import org.walog.CorruptWalException;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/** The input stream of a streamed record: the fragments are read and checked one
+ * by one, so that the record isn't loaded into the heap at once.
+ *
+ * @author little-pan
+ * @since 2026-10-16
+ */
+class NioWalInputStream extends InputStream {
+
+    protected final NioWalFile file;
+    protected final int offset;
+    // Release the file when closed
+    protected final boolean retained;
+    // The next fragment position
+    private int pos;
+    private boolean last, aborted;
+    private byte[] buffer;
+    private int bufferPos, bufferEnd;
+    private boolean closed;
+
+    public NioWalInputStream(NioWalFile file, int offset, boolean retain) {
+        this.file = file;
+        this.offset = offset;
+        this.pos = offset;
+        this.retained = retain;
+        if (retain) {
+            file.retain();
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return (this.buffer[this.bufferPos++] & 0xff);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        final int n = Math.min(len, this.bufferEnd - this.bufferPos);
+        System.arraycopy(this.buffer, this.bufferPos, b, off, n);
+        this.bufferPos += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0L || !fill()) {
+            return 0L;
+        }
+        final int k = (int)Math.min(n, this.bufferEnd - this.bufferPos);
+        this.bufferPos += k;
+        return k;
+    }
+
+    @Override
+    public int available() {
+        return (this.bufferEnd - this.bufferPos);
+    }
+
+    /** Read the next fragment if the current consumed.
+     *
+     * @return false if no more data
+     * @throws IOException if IO error
+     */
+    protected boolean fill() throws IOException {
+        if (this.closed) {
+            throw new IOException("Stream closed");
+        }
+
+        while (this.bufferPos == this.bufferEnd) {
+            if (this.last) {
+                return false;
+            }
+            final int head = this.file.getFragmentHead(this.pos);
+            final int length = head & 0xffffff;
+            if (length > NioWalFile.FRAGMENT_SIZE) {
+                String path = this.file.getFile().getAbsolutePath();
+                throw new CorruptWalException("Illegal fragment length", path, this.pos);
+            }
+            byte[] buffer = this.buffer;
+            if (buffer == null || buffer.length < length) {
+                this.buffer = buffer = new byte[length];
+            }
+            this.file.getFragment(this.offset, this.pos, buffer, length);
+            this.pos += NioWalFile.FRAGMENT_HEAD_SIZE + length + 8;
+            this.last = ((head >>> 24 & NioWalFile.FRAGMENT_MORE) == 0);
+            this.aborted = ((head >>> 24 & NioWalFile.FRAGMENT_ABORTED) != 0);
+            this.bufferPos = 0;
+            this.bufferEnd = length;
+        }
+
+        return true;
+    }
+
+    /** Whether the record ends with the fragment flagged aborted, after the last
+     * fragment read.
+     *
+     * @return true if the record aborted
+     */
+    public boolean isAborted() {
+        return this.aborted;
+    }
+
+    /** The next fragment position, i.e. the end of the record after the last
+     * fragment read.
+     *
+     * @return the next fragment position
+     */
+    public int position() {
+        return this.pos;
+    }
+
+    @Override
+    public void close() {
+        if (!this.closed) {
+            this.closed = true;
+            this.buffer = null;
+            if (this.retained) {
+                this.file.release();
+            }
+        }
+    }
+
+}
@@ -37,6 +37,8 @@ class NioWalIterator implements WalIterator {
 
     static final long LSN_UNDEFINED = -1L;
     static final long NOT_TIMEOUT = -1L;
+    // Read ahead after reading the bytes sequentially in a file
+    static final int SEQUENTIAL_BYTES = 64 << 10;
 
     protected final NioWaler waler;
     protected long lsn;
@@ -46,6 +48,10 @@ class NioWalIterator implements WalIterator {
     private boolean hasNextCalled;
     private boolean noNext;
     private boolean open = true;
+    // Sequential read states: the file offset of the first wal got, and the wal file
+    // private to this iterator if read ahead
+    private int startOffset = -1;
+    private boolean readAhead;
 
     public NioWalIterator(NioWaler waler) {
         this.waler = waler;
@@ -127,9 +133,10 @@ class NioWalIterator implements WalIterator {
             this.wal = get(this.lsn);
             if (this.wal == null) {
                 this.walFile.release();
+                this.walFile = null;
                 // Open next wal file
                 this.lsn = WalFileUtils.nextFileLsn(this.lsn);
-                this.walFile = this.waler.getWalFile(this.lsn);
+                this.walFile = openWalFile(this.lsn);
                 if (this.walFile == null) {
                     this.noNext = true;
                     failed = false;
@@ -177,7 +184,7 @@ class NioWalIterator implements WalIterator {
         if (n > 0) {
             SimpleWal next = curr;
             for (int i = 0; i < n; ++i) {
-                next = this.waler.next(next, false);
+                next = fetchNext(next);
                 if (next == null) {
                     break;
                 }
@@ -193,7 +200,93 @@ class NioWalIterator implements WalIterator {
         this.lsn = curr.nextLsn();
     }
 
+    protected SimpleWal fetchNext(SimpleWal wal) {
+        if (!this.readAhead) {
+            return this.waler.next(wal, false);
+        }
+
+        // Note: fetch in the read-ahead file, and open the next file in hasNext()
+        try {
+            return this.walFile.get(WalFileUtils.fileOffset(wal.nextLsn()));
+        } catch (EOFException e) {
+            return null;
+        } catch (IOException e) {
+            throw new IOWalException(e);
+        }
+    }
+
+    /** Open the next wal file: the one in the wal cache, or a private one if read ahead
+     * and the file sealed, for the last file is still appended.
+     *
+     * @param lsn the file lsn
+     * @return the wal file retained, or null if not exists
+     * @throws IOException if IO error
+     */
+    protected NioWalFile openWalFile(long lsn) throws IOException {
+        if (!this.readAhead) {
+            this.startOffset = -1;
+            return this.waler.getWalFile(lsn);
+        }
+
+        final File dir = this.waler.getDirectory();
+        final String filename = WalFileUtils.filename(lsn);
+        final File file = new File(dir, filename);
+        if (!file.isFile()) {
+            return null;
+        }
+        if (WalFileUtils.lastFileLsn(dir, filename) == lsn) {
+            this.readAhead = false;
+            this.startOffset = -1;
+            return this.waler.getWalFile(lsn);
+        }
+        return openReadAhead(file);
+    }
+
+    protected NioWalFile openReadAhead(File file) throws IOException {
+        final NioWalFile walFile = new NioWalFile(file);
+        boolean failed = true;
+        try {
+            walFile.retain();
+            walFile.setReadAhead(this.waler.getReadAhead(), NioReadAhead.PREFETCH == 1);
+            failed = false;
+            return walFile;
+        } finally {
+            if (failed) {
+                IoUtils.close(walFile);
+            }
+        }
+    }
+
+    /** Switch to the private wal file in read-ahead mode if this iterator has read the
+     * sealed file sequentially, so that the scan bypasses the block caches. The last
+     * file is read from the shared wal file, which follows the appends.
+     *
+     * @param offset the offset of the wal got
+     * @throws IOException if IO error
+     */
+    protected void checkSequential(int offset) throws IOException {
+        if (this.readAhead || this.waler.getReadAhead() == 0) {
+            return;
+        }
+        if (this.startOffset == -1) {
+            this.startOffset = offset;
+            return;
+        }
+        if (offset - this.startOffset >= SEQUENTIAL_BYTES) {
+            if (this.walFile.isLastFile()) {
+                // Check again after the next sequential bytes
+                this.startOffset = offset;
+                return;
+            }
+            final NioWalFile walFile = openReadAhead(this.walFile.getFile());
+            this.walFile.release();
+            this.walFile = walFile;
+            this.readAhead = true;
+        }
+    }
+
     protected SimpleWal get(long lsn) throws IOException {
+        checkSequential(WalFileUtils.fileOffset(lsn));
         SimpleWal wal = this.walFile.get(lsn);
 
         if (this.waler.fetchLast && wal != null) {
@@ -237,6 +330,7 @@ class NioWalIterator implements WalIterator {
     public void close() {
         if (this.walFile != null) {
             this.walFile.release();
+            this.walFile = null;
         }
         this.noNext = true;
         this.open = false;
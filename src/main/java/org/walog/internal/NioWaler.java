@@ -27,14 +27,17 @@ package org.walog.internal;
 import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.file.*;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.walog.*;
 import org.walog.util.IoUtils;
 import org.walog.util.LruCache;
-import org.walog.util.SysUtils;
 import org.walog.util.WalFileUtils;
 
 /**
@@ -49,6 +52,8 @@ public class NioWaler implements Waler {
     protected final File dir;
     protected final int fetchSize;
     protected final boolean fetchLast;
+    // The read-ahead window of the iterators scanning the sealed files, 0 if not
+    private volatile int readAhead = NioReadAhead.READ_AHEAD;
 
     // file lsn -> wal file
     protected final LruCache<Long, NioWalFile> walCache;
@@ -113,17 +118,127 @@ public class NioWaler implements Waler {
         return append(log.getBytes(Wal.CHARSET), false);
     }
 
+    @Override
+    public Wal append(byte[] log, Durability durability) throws WalException {
+        return append(log, true, durability);
+    }
+
+    @Override
+    public Wal append(String log, Durability durability) throws WalException {
+        return append(log.getBytes(Wal.CHARSET), false, durability);
+    }
+
+    @Override
+    public long append(ByteBuffer log) throws WalException {
+        ensureOpen();
+
+        final AppendPayloadItem item = new AppendPayloadItem(log, getDurability());
+        final NioAppender appender = getAppender();
+        return appender.append(item).getLsn();
+    }
+
+    @Override
+    public long append(InputStream log, long length) throws WalException, IllegalArgumentException {
+        if (length < 0L || NioWalFile.streamSize(length) > Wal.LSN_OFFSET_MASK) {
+            throw new IllegalArgumentException("length: " + length);
+        }
+        ensureOpen();
+
+        final AppendStreamItem item = new AppendStreamItem(log, (int)length, getDurability());
+        final NioAppender appender = getAppender();
+        return appender.append(item).getLsn();
+    }
+
+    @Override
+    public List<Wal> append(List<byte[]> logs) throws WalException {
+        final List<byte[]> copies = new ArrayList<>(logs.size());
+        for (byte[] log : logs) {
+            copies.add(Arrays.copyOf(log, log.length));
+        }
+        return appendBatch(copies);
+    }
+
+    @Override
+    public List<Wal> append(byte[][] logs) throws WalException {
+        return append(Arrays.asList(logs));
+    }
+
+    protected List<Wal> appendBatch(List<byte[]> logs) throws WalException {
+        ensureOpen();
+
+        if (logs.size() == 0) {
+            return new ArrayList<>(0);
+        }
+        final AppendBatchItem item = new AppendBatchItem(logs, getDurability());
+        final NioAppender appender = getAppender();
+        return appender.append(item);
+    }
+
+    @Override
+    public void appendAsync(byte[] log, WalCallback callback) {
+        appendAsync(log, callback, true);
+    }
+
+    @Override
+    public void appendAsync(String log, WalCallback callback) {
+        appendAsync(log.getBytes(Wal.CHARSET), callback, false);
+    }
+
+    protected void appendAsync(byte[] log, WalCallback callback, boolean copy) {
+        if (callback == null) {
+            throw new NullPointerException("callback");
+        }
+        if (copy) {
+            log = Arrays.copyOf(log, log.length);
+        }
+
+        final AppendPayloadItem item = new AppendPayloadItem(log, getDurability(), callback);
+        try {
+            ensureOpen();
+        } catch (WalException e) {
+            item.setResult(e);
+            return;
+        }
+        final NioAppender appender = getAppender();
+        appender.appendAsync(item);
+    }
+
     protected Wal append(byte[] log, boolean copy) throws WalException {
+        return append(log, copy, getDurability());
+    }
+
+    protected Wal append(byte[] log, boolean copy, Durability durability) throws WalException {
+        if (durability == null) {
+            throw new NullPointerException("durability");
+        }
         ensureOpen();
 
         if (copy) {
             log = Arrays.copyOf(log, log.length);
         }
-        final AppendPayloadItem item = new AppendPayloadItem(log);
+        final AppendPayloadItem item = new AppendPayloadItem(log, durability);
         final NioAppender appender = getAppender();
         return appender.append(item);
     }
 
+    protected Durability getDurability() {
+        final AppendOptions options = this.appendOptions;
+        if (options == null) {
+            return AppendOptions.defaultDurability();
+        } else {
+            return options.getDurability();
+        }
+    }
+
+    protected AppendOptions getAppendOptions() {
+        final AppendOptions options = this.appendOptions;
+        if (options == null) {
+            return AppendOptions.builder().build();
+        } else {
+            return options;
+        }
+    }
+
     protected NioAppender getAppender() {
         final NioAppender appender = this.appender;
         if (appender == null) {
@@ -226,18 +341,14 @@ public class NioWaler implements Waler {
 
     protected static WatchKey watchPoll(WatchService watchService, long timeout)
             throws InterruptedException {
-        if (SysUtils.WINDOWS && (timeout == 0L || timeout > 100L)) {
-            // A workaround of polling:
-            // sometimes watching not notified, file watch service issue on windows platform?
+        // A workaround of polling:
+        // sometimes watching not notified, file watch service issue on windows platform?
+        // And the memory-mapped appends into the kept tail of the append file modify
+        // the file without notification on all platforms
+        if (timeout == 0L || timeout > 100L) {
             timeout = 100L;
-            return watchService.poll(timeout, TimeUnit.MILLISECONDS);
-        }
-
-        if (timeout == 0L) {
-            return watchService.take();
-        } else {
-            return watchService.poll(timeout, TimeUnit.MILLISECONDS);
         }
+        return watchService.poll(timeout, TimeUnit.MILLISECONDS);
     }
 
     @Override
@@ -280,6 +391,33 @@ public class NioWaler implements Waler {
         }
     }
 
+    @Override
+    public InputStream openStream(long lsn) throws WalException, IllegalArgumentException {
+        checkLsn(lsn);
+        ensureOpen();
+
+        NioWalFile walFile = null;
+        try {
+            walFile = getWalFile(lsn);
+            if (walFile == null) {
+                return null;
+            }
+            return walFile.openStream(WalFileUtils.fileOffset(lsn));
+        } catch (EOFException e) {
+            // No more wal or partial wal
+            if (walFile != null && walFile.isLastFile()) {
+                return null;
+            }
+            throw new IOWalException(e);
+        } catch (IOException e) {
+            throw new IOWalException(e);
+        } finally {
+            if (walFile != null) {
+                walFile.release();
+            }
+        }
+    }
+
     static void checkLsn(long lsn) throws IllegalArgumentException {
         if (lsn < 0L) {
             throw new IllegalArgumentException("lsn must be bigger than or equals 0: " + lsn);
@@ -523,6 +661,100 @@ public class NioWaler implements Waler {
         return appender.append(item);
     }
 
+    /** The bytes appended but not synced to storage yet, which the auto flush
+     * syncs within the flush period even if no more wals appended.
+     *
+     * @return the dirty bytes
+     */
+    public long getDirtyBytes() {
+        final NioAppender appender = this.appender;
+        return (appender == null? 0L: appender.getDirtyBytes());
+    }
+
+    /** The age of the oldest wal not synced to storage yet.
+     *
+     * @return the dirty age in milliseconds, or 0 if no dirty wals
+     */
+    public long getDirtyAge() {
+        final NioAppender appender = this.appender;
+        return (appender == null? 0L: appender.getDirtyAge());
+    }
+
+    /** The times of waiting for the append file lock held by other processes.
+     *
+     * @return the file lock waits
+     */
+    public long getFileLockWaits() {
+        final NioAppender appender = this.appender;
+        return (appender == null? 0L: appender.getFileLockWaits());
+    }
+
+    /** The total time of waiting for the append file lock.
+     *
+     * @return the wait time in milliseconds
+     */
+    public long getFileLockWaitTime() {
+        final NioAppender appender = this.appender;
+        return (appender == null? 0L: appender.getFileLockWaitTime());
+    }
+
+    /** The times of the append file lock changed hands: other processes appended
+     * wals after this waler released the file lock.
+     *
+     * @return the file lock handoffs
+     */
+    public long getFileLockHandoffs() {
+        final NioAppender appender = this.appender;
+        return (appender == null? 0L: appender.getFileLockHandoffs());
+    }
+
+    /** The times of the append file recovered after the append file lock acquired,
+     * i.e. not resumed from the tail state saved by the last lock holder.
+     *
+     * @return the recoveries
+     */
+    public long getRecoveries() {
+        final NioAppender appender = this.appender;
+        return (appender == null? 0L: appender.getRecoveries());
+    }
+
+    /** The batches appended into the append file.
+     *
+     * @return the batches
+     */
+    public long getBatches() {
+        final NioAppender appender = this.appender;
+        return (appender == null? 0L: appender.getBatches());
+    }
+
+    /** The syncs of the append file: at most one for each batch of durable wals.
+     *
+     * @return the syncs
+     */
+    public long getSyncs() {
+        final NioAppender appender = this.appender;
+        return (appender == null? 0L: appender.getSyncs());
+    }
+
+    /** The current batch limit of the async appender, which is the batch size if
+     * not in adaptive batch mode.
+     *
+     * @return the batch limit, or 0 if the appender not started
+     */
+    public int getBatchLimit() {
+        final NioAppender appender = this.appender;
+        return (appender == null? 0: appender.getBatchLimit());
+    }
+
+    /** The moving average of the items in each batch of the async appender.
+     *
+     * @return the average batch size
+     */
+    public double getAvgBatchSize() {
+        final NioAppender appender = this.appender;
+        return (appender == null? 0.0: appender.getAvgBatchSize());
+    }
+
     // Internal method
     public Wal append(SimpleWal wal) throws WalException {
         AppendPayloadItem item = new AppendWalItem(wal);
@@ -531,6 +763,34 @@ public class NioWaler implements Waler {
         return appender.append(item);
     }
 
+    /** The lsn of the last wal replicated with the specified one: the frame is
+     * replicated as a whole with its first wal.
+     *
+     * @param wal the wal from wal master node
+     * @return the last lsn replicated
+     */
+    // Internal method
+    public static long replicatedLsn(Wal wal) {
+        if (wal instanceof FrameWal) {
+            final FrameWal frameWal = (FrameWal)wal;
+            final long fileLsn = WalFileUtils.fileLsn(wal.getLsn());
+            return (fileLsn | (frameWal.frameOffset + frameWal.count - 1));
+        }
+        return wal.getLsn();
+    }
+
+    // Internal method
+    public void setReadAhead(int windowSize) throws IllegalArgumentException {
+        if (windowSize != 0) {
+            NioReadAhead.checkWindowSize(windowSize);
+        }
+        this.readAhead = windowSize;
+    }
+
+    public int getReadAhead() {
+        return this.readAhead;
+    }
+
     protected void ensureOpen() throws WalException {
         if (!isOpen()) {
             throw new IOWalException("waler closed");
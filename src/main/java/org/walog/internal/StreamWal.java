@@ -0,0 +1,95 @@
+/**
+ * The MIT License (MIT)
+ * <p>
+ * Copyright (c) 2020 little-pan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.walog.internal;
+
+import org.walog.SimpleWal;
+
+/** The streamed record, which is stored as a chain of fragments. The payload of
+ * the record appended from a stream isn't kept, so that only the lsn and the length
+ * are available. The aborted record, which ends with the fragment flagged aborted,
+ * is skipped by readers and recovery.
+ *
+ * @author little-pan
+ * @since 2026-10-16
+ */
+class StreamWal extends SimpleWal {
+
+    private static final long serialVersionUID = 1L;
+
+    protected final int length;
+    // The stored size of the fragments
+    protected final int size;
+    protected final boolean aborted;
+
+    StreamWal(long lsn, int length) {
+        this(lsn, length, (int)NioWalFile.streamSize(length), false);
+    }
+
+    StreamWal(long lsn, int length, int size, boolean aborted) {
+        super(lsn, (byte)NioWalFile.FRAGMENT_PREFIX, null);
+        this.length = length;
+        this.size = size;
+        this.aborted = aborted;
+    }
+
+    StreamWal(long lsn, byte[] data) {
+        super(lsn, (byte)NioWalFile.FRAGMENT_PREFIX, data);
+        this.length = data.length;
+        this.size = (int)NioWalFile.streamSize(data.length);
+        this.aborted = false;
+    }
+
+    boolean hasData() {
+        return (this.data != null);
+    }
+
+    boolean isAborted() {
+        return this.aborted;
+    }
+
+    @Override
+    protected int getNextOffset() {
+        return (getOffset() + this.size);
+    }
+
+    @Override
+    public byte[] getData() {
+        if (this.data == null) {
+            throw new UnsupportedOperationException("Payload of stream wal not kept");
+        }
+        return this.data;
+    }
+
+    @Override
+    public String toString() {
+        if (this.data == null) {
+            return String.format("lsn 0x%x, length %d%s", this.lsn, this.length,
+                    (this.aborted? ", aborted": ""));
+        }
+        return super.toString();
+    }
+
+}
@@ -0,0 +1,239 @@
+/**
+ * The MIT License (MIT)
+ * <p>
+ * Copyright (c) 2020 little-pan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.walog.rmi;
+
+import org.walog.*;
+import org.walog.util.IoUtils;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/** The client side appender that sends the asynchronous appends of a rmi waler
+ * in its own thread, so that the caller doesn't wait for the remote call. The
+ * queued appends are drained and sent in one batch append call.
+ *
+ * @author little-pan
+ * @since 2026-10-16
+ */
+class RmiAppender extends Thread implements AutoCloseable {
+
+    static final AtomicLong ID_GEN = new AtomicLong();
+    static final Item END_ITEM = new Item(null, null);
+    // The max wait time for the queued appends when closing, if no append timeout
+    static final long CLOSE_TIMEOUT = 10000L;
+
+    protected final RmiWrapper wrapper;
+    protected final BlockingQueue<Item> appendQueue;
+    protected final int batchSize;
+    private volatile boolean open;
+
+    public RmiAppender(RmiWrapper wrapper) {
+        this(wrapper, AppendOptions.QUEUE_SIZE, AppendOptions.BATCH_SIZE);
+    }
+
+    public RmiAppender(RmiWrapper wrapper, int queueSize, int batchSize) {
+        if (queueSize < 1) {
+            throw new IllegalArgumentException("queueSize: " + queueSize);
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize: " + batchSize);
+        }
+
+        setDaemon(true);
+        setName("walog-rmi-appender-" + ID_GEN.getAndIncrement());
+        this.wrapper = wrapper;
+        this.appendQueue = new ArrayBlockingQueue<>(queueSize);
+        this.batchSize = batchSize;
+        this.open = true;
+    }
+
+    public void append(byte[] log, WalCallback callback) {
+        final Item item = new Item(log, callback);
+        try {
+            ensureOpen();
+            final boolean offered;
+            if (AppendOptions.APPEND_TIMEOUT <= 0) {
+                this.appendQueue.put(item);
+                offered = true;
+            } else {
+                offered = this.appendQueue.offer(item, AppendOptions.APPEND_TIMEOUT, MILLISECONDS);
+            }
+            if (!offered) {
+                throw new TimeoutWalException("Append timeout");
+            }
+            // Check again: appender may be closed before enqueued
+            if (!isOpen() && this.appendQueue.remove(item)) {
+                ensureOpen();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            item.complete(null, new InterruptedWalException("Append interrupted", e));
+        } catch (WalException e) {
+            item.complete(null, e);
+        }
+    }
+
+    @Override
+    public void run() {
+        final List<Item> batch = new ArrayList<>(this.batchSize);
+        try {
+            boolean end = false;
+            while (!end) {
+                batch.add(this.appendQueue.take());
+                this.appendQueue.drainTo(batch, this.batchSize - 1);
+                final int i = batch.indexOf(END_ITEM);
+                if (i != -1) {
+                    // Send the appends queued before the end, and fail the others
+                    final List<Item> rest = batch.subList(i, batch.size());
+                    rest.remove(0);
+                    completeAll(rest, new NetWalException("rmi appender closed"));
+                    rest.clear();
+                    end = true;
+                }
+                send(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // Exit
+        } finally {
+            this.open = false;
+            failQueued();
+        }
+    }
+
+    /** Send the batch of appends in one remote call, and complete each item from
+     * the returned wals.
+     *
+     * @param batch the append items
+     */
+    protected void send(List<Item> batch) {
+        final int n = batch.size();
+        if (n == 0) {
+            return;
+        }
+
+        final List<byte[]> logs = new ArrayList<>(n);
+        for (Item item : batch) {
+            logs.add(item.log);
+        }
+        final List<Wal> wals;
+        try {
+            wals = this.wrapper.append(logs);
+        } catch (RemoteException e) {
+            completeAll(batch, new NetWalException("append failed", e));
+            return;
+        } catch (WalException e) {
+            completeAll(batch, e);
+            return;
+        }
+        if (wals == null || wals.size() != n) {
+            completeAll(batch, new NetWalException("append failed: result size not matched"));
+            return;
+        }
+        for (int i = 0; i < n; ++i) {
+            batch.get(i).complete(wals.get(i), null);
+        }
+    }
+
+    static void completeAll(List<Item> batch, WalException cause) {
+        for (Item item : batch) {
+            item.complete(null, cause);
+        }
+    }
+
+    protected void failQueued() {
+        WalException closed = new NetWalException("rmi appender closed");
+        for (;;) {
+            final Item item = this.appendQueue.poll();
+            if (item == null) {
+                break;
+            }
+            if (item != END_ITEM) {
+                item.complete(null, closed);
+            }
+        }
+    }
+
+    protected void ensureOpen() throws WalException {
+        if (!isOpen()) {
+            throw new NetWalException("rmi appender closed");
+        }
+    }
+
+    public boolean isOpen() {
+        return this.open;
+    }
+
+    @Override
+    public void close() {
+        this.open = false;
+        if (!this.appendQueue.offer(END_ITEM)) {
+            interrupt();
+        }
+        if (Thread.currentThread() != this) {
+            final long timeout;
+            if (AppendOptions.APPEND_TIMEOUT > 0) {
+                timeout = AppendOptions.APPEND_TIMEOUT;
+            } else {
+                timeout = CLOSE_TIMEOUT;
+            }
+            try {
+                // Wait for the queued appends, but not forever if the remote end unreachable
+                join(timeout);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (isAlive()) {
+                IoUtils.info("%s: wait for the queued appends timeout", getName());
+                failQueued();
+            }
+        }
+    }
+
+    static class Item {
+        final byte[] log;
+        final WalCallback callback;
+
+        Item(byte[] log, WalCallback callback) {
+            this.log = log;
+            this.callback = callback;
+        }
+
+        void complete(Wal wal, WalException cause) {
+            try {
+                this.callback.onComplete(wal, cause);
+            } catch (final Throwable e) {
+                IoUtils.error("Append callback failed", e);
+            }
+        }
+    }
+
+}
@@ -27,11 +27,21 @@ package org.walog.rmi;
 import org.walog.*;
 import org.walog.util.IoUtils;
 
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 public class RmiWaler implements Waler {
 
     protected final RmiWrapper wrapper;
+    private final Object appenderInitLock = new Object();
+    private volatile RmiAppender appender;
 
     public RmiWaler(RmiWrapper wrapper) {
         this.wrapper = wrapper;
@@ -69,6 +79,99 @@ public class RmiWaler implements Waler {
         }
     }
 
+    @Override
+    public Wal append(byte[] log, Durability durability) throws WalException {
+        try {
+            return this.wrapper.append(log, durability);
+        } catch (RemoteException e) {
+            throw new NetWalException("append failed", e);
+        }
+    }
+
+    @Override
+    public Wal append(String log, Durability durability) throws WalException {
+        return append(log.getBytes(Wal.CHARSET), durability);
+    }
+
+    @Override
+    public long append(ByteBuffer log) throws WalException {
+        // Note: the buffer isn't serializable
+        final byte[] data = new byte[log.remaining()];
+        log.duplicate().get(data);
+        return append(data).getLsn();
+    }
+
+    @Override
+    public long append(InputStream log, long length) throws WalException, IllegalArgumentException {
+        if (length < 0L || length > Wal.LSN_OFFSET_MASK) {
+            throw new IllegalArgumentException("length: " + length);
+        }
+        // Note: the stream isn't serializable
+        final byte[] data = new byte[(int)length];
+        try {
+            for (int i = 0, n; i < data.length; i += n) {
+                n = log.read(data, i, data.length - i);
+                if (n == -1) {
+                    throw new EOFException("Append stream ended");
+                }
+            }
+        } catch (IOException e) {
+            throw new IOWalException("Read append stream failed", e);
+        }
+
+        try {
+            return this.wrapper.appendStream(data);
+        } catch (RemoteException e) {
+            throw new NetWalException("append failed", e);
+        }
+    }
+
+    @Override
+    public List<Wal> append(List<byte[]> logs) throws WalException {
+        try {
+            return this.wrapper.append(new ArrayList<>(logs));
+        } catch (RemoteException e) {
+            throw new NetWalException("append failed", e);
+        }
+    }
+
+    @Override
+    public List<Wal> append(byte[][] logs) throws WalException {
+        return append(Arrays.asList(logs));
+    }
+
+    @Override
+    public void appendAsync(byte[] log, WalCallback callback) {
+        if (callback == null) {
+            throw new NullPointerException("callback");
+        }
+        getAppender().append(log.clone(), callback);
+    }
+
+    @Override
+    public void appendAsync(String log, WalCallback callback) {
+        if (callback == null) {
+            throw new NullPointerException("callback");
+        }
+        getAppender().append(log.getBytes(Wal.CHARSET), callback);
+    }
+
+    protected RmiAppender getAppender() {
+        final RmiAppender appender = this.appender;
+        if (appender == null) {
+            synchronized (this.appenderInitLock) {
+                if (this.appender == null) {
+                    RmiAppender a = new RmiAppender(this.wrapper);
+                    a.start();
+                    this.appender = a;
+                }
+                return this.appender;
+            }
+        }
+
+        return appender;
+    }
+
     @Override
     public Wal first() throws WalException {
         try {
@@ -96,6 +199,13 @@ public class RmiWaler implements Waler {
         }
     }
 
+    @Override
+    public InputStream openStream(long lsn) throws WalException, IllegalArgumentException {
+        // Note: the payload is fetched at once
+        final Wal wal = get(lsn);
+        return (wal == null? null: new ByteArrayInputStream(wal.getData()));
+    }
+
     @Override
     public Wal next(Wal wal) throws WalException, IllegalArgumentException {
         try {
@@ -224,6 +334,9 @@ public class RmiWaler implements Waler {
 
     @Override
     public void close() {
+        synchronized (this.appenderInitLock) {
+            IoUtils.close(this.appender);
+        }
         try {
             this.wrapper.close();
         } catch (RemoteException e) {
@@ -1,10 +1,12 @@
 package org.walog.rmi;
 
+import org.walog.Durability;
 import org.walog.Wal;
 import org.walog.WalException;
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
 
 public interface RmiWrapper extends Remote, AutoCloseable {
 
@@ -22,6 +24,19 @@ public interface RmiWrapper extends Remote, AutoCloseable {
 
     Wal append(String log) throws WalException, RemoteException;
 
+    Wal append(byte[] log, Durability durability) throws WalException, RemoteException;
+
+    List<Wal> append(List<byte[]> logs) throws WalException, RemoteException;
+
+    /**
+     * Append the log payload as a streamed log, which can be bigger than 16MB.
+     *
+     * @param log the log payload
+     * @return the lsn of the appended log
+     * @throws WalException if IO error, appending timeout, or interrupted
+     */
+    long appendStream(byte[] log) throws WalException, RemoteException;
+
     /** Get current first log in this wal logger.
      *
      * @return the first log, or null if no any log
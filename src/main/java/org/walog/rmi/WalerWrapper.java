@@ -27,8 +27,10 @@ package org.walog.rmi;
 import org.walog.*;
 import org.walog.util.IoUtils;
 
+import java.io.ByteArrayInputStream;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.List;
 
 public class WalerWrapper extends UnicastRemoteObject implements RmiWrapper {
 
@@ -63,6 +65,24 @@ public class WalerWrapper extends UnicastRemoteObject implements RmiWrapper {
         return this.waler.append(log);
     }
 
+    @Override
+    public Wal append(byte[] log, Durability durability) throws WalException, RemoteException {
+        ensureOpen();
+        return this.waler.append(log, durability);
+    }
+
+    @Override
+    public List<Wal> append(List<byte[]> logs) throws WalException, RemoteException {
+        ensureOpen();
+        return this.waler.append(logs);
+    }
+
+    @Override
+    public long appendStream(byte[] log) throws WalException, RemoteException {
+        ensureOpen();
+        return this.waler.append(new ByteArrayInputStream(log), log.length);
+    }
+
     @Override
     public Wal first() throws WalException, RemoteException {
         ensureOpen();
@@ -0,0 +1,198 @@
+/**
+ * The MIT License (MIT)
+ * <p>
+ * Copyright (c) 2020 little-pan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.walog.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
+/** The CRC-32C(Castagnoli) checksum in the slicing-by-8 algorithm, which is used
+ * when the runtime hasn't the intrinsic java.util.zip.CRC32C(Java 9+).
+ *
+ * @author little-pan
+ * @since 2026-10-16
+ */
+public class Crc32c implements Checksum {
+
+    // The reversed Castagnoli polynomial
+    static final int POLY = 0x82f63b78;
+    static final int[][] TABLES = new int[8][256];
+
+    static {
+        final int[] t0 = TABLES[0];
+        for (int n = 0; n < 256; ++n) {
+            int c = n;
+            for (int k = 0; k < 8; ++k) {
+                c = (c & 1) != 0? (c >>> 1) ^ POLY: c >>> 1;
+            }
+            t0[n] = c;
+        }
+        for (int n = 0; n < 256; ++n) {
+            int c = t0[n];
+            for (int k = 1; k < 8; ++k) {
+                c = (c >>> 8) ^ t0[c & 0xff];
+                TABLES[k][n] = c;
+            }
+        }
+    }
+
+    // The intrinsic implementation on Java 9+, or null
+    static final MethodHandle NEW_INTRINSIC;
+    static final MethodHandle UPDATE_INTRINSIC;
+
+    static {
+        MethodHandle newIntrinsic = null, updateIntrinsic = null;
+        try {
+            final Class<?> clazz = Class.forName("java.util.zip.CRC32C");
+            final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            newIntrinsic = lookup.findConstructor(clazz, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Checksum.class));
+            updateIntrinsic = lookup.findVirtual(clazz, "update",
+                    MethodType.methodType(void.class, ByteBuffer.class))
+                    .asType(MethodType.methodType(void.class, Checksum.class, ByteBuffer.class));
+        } catch (ReflectiveOperationException e) {
+            // Use this implementation
+            newIntrinsic = updateIntrinsic = null;
+        }
+        NEW_INTRINSIC = newIntrinsic;
+        UPDATE_INTRINSIC = updateIntrinsic;
+    }
+
+    static final ThreadLocal<Checksum> LOCAL = new ThreadLocal<Checksum>() {
+        @Override
+        protected Checksum initialValue() {
+            return newInstance();
+        }
+    };
+
+    private int crc = 0xffffffff;
+
+    /** Create a CRC-32C checksum, the intrinsic one if available.
+     *
+     * @return the CRC-32C checksum
+     */
+    public static Checksum newInstance() {
+        if (NEW_INTRINSIC != null) {
+            try {
+                return (Checksum) NEW_INTRINSIC.invokeExact();
+            } catch (Throwable e) {
+                throw new IllegalStateException("Create CRC32C failed", e);
+            }
+        }
+        return new Crc32c();
+    }
+
+    public static int compute(byte[] bytes, int offset, int length) {
+        final Checksum checksum = LOCAL.get();
+        checksum.reset();
+        checksum.update(bytes, offset, length);
+        return (int) checksum.getValue();
+    }
+
+    /** Compute the CRC-32C of the remaining bytes of the buffer, without changing
+     * the buffer position.
+     *
+     * @param buffer the heap or direct buffer
+     * @return the checksum
+     */
+    public static int compute(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            return compute(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+
+        final Checksum checksum = LOCAL.get();
+        checksum.reset();
+        if (checksum instanceof Crc32c) {
+            ((Crc32c) checksum).update(buffer.duplicate());
+        } else {
+            try {
+                UPDATE_INTRINSIC.invokeExact(checksum, buffer.duplicate());
+            } catch (Throwable e) {
+                throw new IllegalStateException("Compute CRC32C failed", e);
+            }
+        }
+        return (int) checksum.getValue();
+    }
+
+    @Override
+    public void update(int b) {
+        this.crc = (this.crc >>> 8) ^ TABLES[0][(this.crc ^ b) & 0xff];
+    }
+
+    @Override
+    public void update(byte[] bytes, int offset, int length) {
+        final int[] t0 = TABLES[0], t1 = TABLES[1], t2 = TABLES[2], t3 = TABLES[3];
+        final int[] t4 = TABLES[4], t5 = TABLES[5], t6 = TABLES[6], t7 = TABLES[7];
+        int c = this.crc;
+        int i = offset;
+        final int end = offset + length;
+
+        for (final int n = end - 7; i < n; i += 8) {
+            c ^= (bytes[i] & 0xff) | (bytes[i + 1] & 0xff) << 8
+                    | (bytes[i + 2] & 0xff) << 16 | (bytes[i + 3] & 0xff) << 24;
+            c = t7[c & 0xff] ^ t6[(c >>> 8) & 0xff] ^ t5[(c >>> 16) & 0xff] ^ t4[c >>> 24]
+                    ^ t3[bytes[i + 4] & 0xff] ^ t2[bytes[i + 5] & 0xff]
+                    ^ t1[bytes[i + 6] & 0xff] ^ t0[bytes[i + 7] & 0xff];
+        }
+        for (; i < end; ++i) {
+            c = (c >>> 8) ^ t0[(c ^ bytes[i]) & 0xff];
+        }
+
+        this.crc = c;
+    }
+
+    /** Update the checksum with the remaining bytes of the buffer, and the buffer
+     * position is advanced to the limit as CRC32C does.
+     *
+     * @param buffer the heap or direct buffer
+     */
+    public void update(ByteBuffer buffer) {
+        final int pos = buffer.position(), lim = buffer.limit();
+        if (buffer.hasArray()) {
+            update(buffer.array(), buffer.arrayOffset() + pos, lim - pos);
+        } else {
+            final int[] t0 = TABLES[0];
+            int c = this.crc;
+            for (int i = pos; i < lim; ++i) {
+                c = (c >>> 8) ^ t0[(c ^ buffer.get(i)) & 0xff];
+            }
+            this.crc = c;
+        }
+        buffer.position(lim);
+    }
+
+    @Override
+    public long getValue() {
+        return (~this.crc) & 0xffffffffL;
+    }
+
+    @Override
+    public void reset() {
+        this.crc = 0xffffffff;
+    }
+
+}
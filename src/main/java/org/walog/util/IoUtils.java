@@ -28,7 +28,10 @@ import org.walog.IOWalException;
 import org.walog.WalException;
 
 import java.io.*;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
@@ -117,7 +120,85 @@ public final class IoUtils {
         s2 = (s2 & 0xffff) + (s2 >>> 16);
         return (s2 << 16) | s1;
     }
+
+    /** Compute the Fletcher-32 checksum of the remaining bytes of the buffer,
+     * without changing the buffer position.
+     *
+     * @param buffer the heap or direct buffer
+     * @return the checksum
+     */
+    public static int getFletcher32(ByteBuffer buffer) {
+        final int offset = buffer.position(), length = buffer.remaining();
+        if (buffer.hasArray()) {
+            return getFletcher32(buffer.array(), buffer.arrayOffset() + offset, length);
+        }
+
+        int s1 = 0xffff, s2 = 0xffff;
+        int i = offset, len = offset + (length & ~1);
+        while (i < len) {
+            // reduce after 360 words (each word is two bytes)
+            for (int end = Math.min(i + 720, len); i < end;) {
+                int x = ((buffer.get(i++) & 0xff) << 8) | (buffer.get(i++) & 0xff);
+                s2 += s1 += x;
+            }
+            s1 = (s1 & 0xffff) + (s1 >>> 16);
+            s2 = (s2 & 0xffff) + (s2 >>> 16);
+        }
+        if ((length & 1) != 0) {
+            // odd length: append 0
+            int x = (buffer.get(i) & 0xff) << 8;
+            s2 += s1 += x;
+        }
+        s1 = (s1 & 0xffff) + (s1 >>> 16);
+        s2 = (s2 & 0xffff) + (s2 >>> 16);
+        return (s2 << 16) | s1;
+    }
+
+    public static int getCrc32c(byte[] bytes) {
+        return Crc32c.compute(bytes, 0, bytes.length);
+    }
+
+    public static int getCrc32c(byte[] bytes, int offset, int length) {
+        return Crc32c.compute(bytes, offset, length);
+    }
+
+    public static int getCrc32c(ByteBuffer buffer) {
+        return Crc32c.compute(buffer);
+    }
     
+    /** Unmap the mapped buffer now instead of waiting for GC. The buffer must not
+     * be accessed after unmapped.
+     *
+     * @param buffer the mapped buffer, not a slice or duplicate
+     */
+    public static void unmap(MappedByteBuffer buffer) {
+        try {
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = null;
+            try {
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (NoSuchMethodException e) {
+                // Java 8-
+            }
+            if (invokeCleaner != null) {
+                final Field field = unsafeClass.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                invokeCleaner.invoke(field.get(null), buffer);
+                return;
+            }
+
+            final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            final Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Exception e) {
+            // Unmapped by GC
+            debug("Unmap buffer failed: %s", e);
+        }
+    }
+
     public static void close(AutoCloseable closeable) {
         if (closeable != null) {
             try {
@@ -27,13 +27,31 @@ package org.walog.util;
 import org.walog.Releaseable;
 
 import java.util.Iterator;
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.Map.*;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
+/** The concurrent cache of the recently used values, and the LRU is approximated by
+ * CLOCK: a hit only marks the entry referenced without any lock, and the eviction in
+ * put() sweeps the entries in insertion order under the eviction lock, which gives the
+ * referenced entries a second chance.
+ *
+ * <p>The releaseable value is retained for the cache when put, and for the caller when
+ * got or put. The cache releases its reference when the entry removed, but after the
+ * gets in progress of the entry, so that a get never retains a released value.
+ *
+ * @author little-pan
+ * @since 2026-10-16
+ */
 public class LruCache<K, V extends AutoCloseable> implements AutoCloseable {
 
-    private final Map<K, V> cache;
+    private final int capacity;
+    private final ConcurrentHashMap<K, Node> cache;
+    // The clock of the entries in insertion order, and the referenced ones re-queued
+    private final Queue<Node> clock;
+    private final ReentrantLock evictionLock;
     private volatile boolean open;
 
     public LruCache() {
@@ -41,74 +59,114 @@ public class LruCache<K, V extends AutoCloseable> implements AutoCloseable {
     }
 
     public LruCache(final int capacity){
-        this.cache = new LinkedHashMap<K, V>(capacity,0.75f,true){
-            @Override
-            protected boolean removeEldestEntry(Entry<K, V> eldest) {
-                final boolean canRemoved = size() > capacity;
-                if (canRemoved) {
-                    release(eldest.getValue());
-                }
-                return canRemoved;
-            }
-        };
+        this.capacity = capacity;
+        this.cache = new ConcurrentHashMap<>(capacity);
+        this.clock = new ConcurrentLinkedQueue<>();
+        this.evictionLock = new ReentrantLock();
         this.open = true;
     }
 
     public V get(K key) {
         checkOpen();
 
-        final V value;
-        synchronized (this.cache) {
-            value = this.cache.get(key);
+        final Node node = this.cache.get(key);
+        if (node == null || !node.pin()) {
+            return null;
+        }
+        try {
+            node.referenced = true;
+            final V value = node.value;
             if (value instanceof Releaseable) {
                 Releaseable rel = (Releaseable)value;
                 rel.retain();
             }
+            return value;
+        } finally {
+            node.unpin();
         }
-
-        return value;
     }
 
     public V put(K key, V value) {
         checkOpen();
 
-        final V old;
-        synchronized (this.cache) {
-            old = this.cache.put(key, value);
-            if (value instanceof Releaseable) {
-                Releaseable rel = (Releaseable)value;
-                rel.retain(2);
-            }
+        final Node node = new Node(key, value);
+        if (value instanceof Releaseable) {
+            Releaseable rel = (Releaseable)value;
+            rel.retain(2);
+        }
+        final Node old = this.cache.put(key, node);
+        this.clock.offer(node);
+        final V oldValue;
+        if (old == null) {
+            oldValue = null;
+        } else {
+            oldValue = old.value;
+            // Note: the same value keeps the reference of the cache
+            remove(old, value != oldValue);
         }
-        if (value != old) {
-            release(old);
+        if (this.cache.size() > this.capacity) {
+            evict();
         }
 
-        return old;
+        return oldValue;
     }
 
     public V remove(K key) {
         checkOpen();
 
-        final V old;
-        synchronized (this.cache) {
-            old = this.cache.remove(key);
+        final Node old = this.cache.remove(key);
+        if (old == null) {
+            return null;
         }
-        release(old);
+        remove(old, true);
 
-        return old;
+        return old.value;
     }
 
     public void clear() {
-        synchronized (this.cache) {
-            Iterator<Entry<K, V>> it = this.cache.entrySet().iterator();
-            while (it.hasNext()) {
-                release(it.next().getValue());
-                it.remove();
+        final Iterator<Node> it = this.cache.values().iterator();
+        while (it.hasNext()) {
+            final Node node = it.next();
+            if (this.cache.remove(node.key, node)) {
+                remove(node, true);
             }
         }
     }
 
+    protected void evict() {
+        final ReentrantLock lock = this.evictionLock;
+        lock.lock();
+        try {
+            // Note: bound the sweep in case of the entries hit again and again
+            int chances = this.capacity << 1;
+            while (this.cache.size() > this.capacity) {
+                final Node node = this.clock.poll();
+                if (node == null) {
+                    break;
+                }
+                if (node.retired()) {
+                    continue;
+                }
+                if (node.referenced && chances-- > 0) {
+                    node.referenced = false;
+                    this.clock.offer(node);
+                    continue;
+                }
+                if (this.cache.remove(node.key, node)) {
+                    node.retire(true);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The node removed from the map
+    private void remove(Node node, boolean release) {
+        this.clock.remove(node);
+        node.retire(release);
+    }
+
     protected void release(V value) {
         if (value instanceof Releaseable) {
             Releaseable rel = (Releaseable) value;
@@ -132,4 +190,68 @@ public class LruCache<K, V extends AutoCloseable> implements AutoCloseable {
         clear();
     }
 
+    class Node {
+
+        // The gets in progress, and the retired bit when the node removed
+        static final int RETIRED = 1 << 30;
+
+        final K key;
+        final V value;
+        final AtomicInteger state;
+        volatile boolean referenced;
+        // Release the value when freed, set before retired
+        private boolean release;
+
+        Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+            this.state = new AtomicInteger();
+        }
+
+        boolean pin() {
+            for (;;) {
+                final int s = this.state.get();
+                if ((s & RETIRED) != 0) {
+                    return false;
+                }
+                if (this.state.compareAndSet(s, s + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void unpin() {
+            if (this.state.decrementAndGet() == RETIRED) {
+                free();
+            }
+        }
+
+        boolean retired() {
+            return ((this.state.get() & RETIRED) != 0);
+        }
+
+        void retire(boolean release) {
+            this.release = release;
+            for (;;) {
+                final int s = this.state.get();
+                if ((s & RETIRED) != 0) {
+                    return;
+                }
+                if (this.state.compareAndSet(s, s | RETIRED)) {
+                    if (s == 0) {
+                        free();
+                    }
+                    return;
+                }
+            }
+        }
+
+        void free() {
+            if (this.release) {
+                release(this.value);
+            }
+        }
+
+    }
+
 }
@@ -0,0 +1,323 @@
+/**
+ * The MIT License (MIT)
+ * <p>
+ * Copyright (c) 2020 little-pan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.walog.util;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/** A bounded multi-producer/single-consumer queue on a pre-allocated ring buffer.
+ *
+ * <p>Producers claim a slot by CAS on the tail sequence then publish the element
+ * into that slot, and the only consumer takes elements in sequence order without
+ * any lock. The waiting of a full producer or an empty consumer is specified by
+ * the wait strategy. Only one thread can take elements from this queue.
+ * </p>
+ *
+ * @author little-pan
+ * @since 2026-10-16
+ */
+public class MpscRingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    public enum WaitStrategy {
+        /** Busy spin: the lowest latency, but the waiting thread occupies a cpu */
+        SPIN,
+        /** Yield the cpu on each try */
+        YIELD,
+        /** Yield for a while then park: the idle consumer is woken up by producers */
+        PARK;
+
+        public static WaitStrategy parse(String name) throws IllegalArgumentException {
+            return valueOf(name.toUpperCase());
+        }
+    }
+
+    static final long PARK_NANOS = 1000L;
+    static final long PARK_MAX_NANOS = 1000_000L;
+    static final int SPIN_TRIES = 100;
+
+    protected final AtomicReferenceArray<E> buffer;
+    protected final int capacity;
+    protected final int mask;
+    protected final WaitStrategy waitStrategy;
+
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private volatile Thread consumer;
+
+    public MpscRingQueue(int capacity) {
+        this(capacity, WaitStrategy.PARK);
+    }
+
+    public MpscRingQueue(int capacity, WaitStrategy waitStrategy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity: " + capacity);
+        }
+        if (waitStrategy == null) {
+            throw new NullPointerException("waitStrategy");
+        }
+
+        int n = 1;
+        while (n < capacity) {
+            n <<= 1;
+        }
+        this.buffer = new AtomicReferenceArray<>(n);
+        this.capacity = capacity;
+        this.mask = n - 1;
+        this.waitStrategy = waitStrategy;
+    }
+
+    public WaitStrategy getWaitStrategy() {
+        return this.waitStrategy;
+    }
+
+    @Override
+    public boolean offer(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+
+        for (;;) {
+            final long t = this.tail.get();
+            if (t - this.head.get() >= this.capacity) {
+                return false;
+            }
+            if (this.tail.compareAndSet(t, t + 1)) {
+                // Publish
+                this.buffer.lazySet((int)t & this.mask, e);
+                final Thread consumer = this.consumer;
+                if (consumer != null) {
+                    LockSupport.unpark(consumer);
+                }
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        for (int i = 0; !offer(e); ++i) {
+            waitFull(i);
+        }
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (int i = 0; !offer(e); ++i) {
+            if (System.nanoTime() - deadline >= 0L) {
+                return false;
+            }
+            waitFull(i);
+        }
+        return true;
+    }
+
+    @Override
+    public E poll() {
+        final long h = this.head.get();
+        final int i = (int)h & this.mask;
+        E e = this.buffer.get(i);
+
+        if (e == null) {
+            if (h == this.tail.get()) {
+                return null;
+            }
+            // Claimed but not published yet
+            do {
+                e = this.buffer.get(i);
+            } while (e == null);
+        }
+        this.buffer.lazySet(i, null);
+        this.head.lazySet(h + 1);
+
+        return e;
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        for (int i = 0;; ++i) {
+            final E e = poll();
+            if (e != null) {
+                return e;
+            }
+            waitEmpty(i, 0L);
+        }
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (int i = 0;; ++i) {
+            final E e = poll();
+            if (e != null) {
+                return e;
+            }
+            final long nanos = deadline - System.nanoTime();
+            if (nanos <= 0L) {
+                return null;
+            }
+            waitEmpty(i, nanos);
+        }
+    }
+
+    @Override
+    public E peek() {
+        final long h = this.head.get();
+        if (h == this.tail.get()) {
+            return null;
+        }
+        return this.buffer.get((int)h & this.mask);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        int n = 0;
+        while (n < maxElements) {
+            final E e = poll();
+            if (e == null) {
+                break;
+            }
+            c.add(e);
+            ++n;
+        }
+        return n;
+    }
+
+    @Override
+    public int size() {
+        // Note: read head first for a non-negative size
+        final long h = this.head.get();
+        final long size = this.tail.get() - h;
+        return (int)Math.max(0L, Math.min(size, this.capacity));
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return (this.capacity - size());
+    }
+
+    /** A weakly consistent snapshot iterator that doesn't support remove().
+     *
+     * @return the snapshot iterator
+     */
+    @Override
+    public Iterator<E> iterator() {
+        final List<E> snapshot = new ArrayList<>();
+        final long t = this.tail.get();
+        for (long h = this.head.get(); h < t; ++h) {
+            final E e = this.buffer.get((int)h & this.mask);
+            if (e != null) {
+                snapshot.add(e);
+            }
+        }
+
+        final Iterator<E> it = snapshot.iterator();
+        return new Iterator<E>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public E next() {
+                return it.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    protected void waitFull(int tries) throws InterruptedException {
+        switch (this.waitStrategy) {
+            case SPIN:
+                break;
+            case YIELD:
+                Thread.yield();
+                break;
+            default:
+                if (tries < SPIN_TRIES) {
+                    Thread.yield();
+                } else {
+                    // Backoff: the consumer doesn't wake up producers
+                    long shift = Math.min(tries - SPIN_TRIES, 10);
+                    LockSupport.parkNanos(this, Math.min(PARK_NANOS << shift, PARK_MAX_NANOS));
+                }
+                break;
+        }
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+
+    protected void waitEmpty(int tries, long nanos) throws InterruptedException {
+        switch (this.waitStrategy) {
+            case SPIN:
+                break;
+            case YIELD:
+                Thread.yield();
+                break;
+            default:
+                if (tries < SPIN_TRIES) {
+                    Thread.yield();
+                    break;
+                }
+                final Thread current = Thread.currentThread();
+                this.consumer = current;
+                try {
+                    // Check again after registering to avoid missing the wakeup
+                    if (isEmpty()) {
+                        if (nanos > 0L) {
+                            LockSupport.parkNanos(this, nanos);
+                        } else {
+                            LockSupport.park(this);
+                        }
+                    }
+                } finally {
+                    this.consumer = null;
+                }
+                break;
+        }
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+
+}
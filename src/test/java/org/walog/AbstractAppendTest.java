@@ -0,0 +1,195 @@
+/**
+ * The MIT License (MIT)
+ * <p>
+ * Copyright (c) 2020 little-pan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.walog;
+
+import org.walog.internal.NioWaler;
+import org.walog.util.Task;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/** The base of the append tests: the shared setup of the test directory, the
+ * concurrent and async appends, and the checks of the wals appended.
+ *
+ * @author little-pan
+ * @since 2026-10-16
+ */
+public abstract class AbstractAppendTest extends Test {
+
+    // The batches and syncs of the last concurrent append
+    protected long batches, syncs;
+
+    protected AbstractAppendTest(int iterate) {
+        super(iterate);
+    }
+
+    /** Open the waler in the test directory.
+     *
+     * @param options the append options
+     * @return the waler opened
+     */
+    protected Waler open(AppendOptions options) {
+        return WalerFactory.open(getDir(), options);
+    }
+
+    /** Delete the test directory, and create it again for the next case.
+     */
+    protected void reset() {
+        cleanup();
+        getDir();
+    }
+
+    protected long concurrentAppend(AppendOptions options, final int c, final int n) {
+        final long start = System.currentTimeMillis();
+        try (final Waler waler = open(options)) {
+            Task<?>[] workers = new Task[c];
+            for (int i = 0; i < c; ++i) {
+                final int id = i;
+                Task<Void> t = newTask(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        for (int j = 0; j < n; ++j) {
+                            Wal wal = waler.append(id + ":" + j);
+                            asserts(wal != null);
+                        }
+                        return null;
+                    }
+                }, "appender-" + i);
+                t.start();
+                workers[i] = t;
+            }
+            for (Task<?> t : workers) {
+                join(t);
+                t.check();
+            }
+            checkAll(waler, c, n);
+            this.batches = ((NioWaler) waler).getBatches();
+            this.syncs = ((NioWaler) waler).getSyncs();
+        }
+        final long end = System.currentTimeMillis();
+
+        reset();
+        return (end - start);
+    }
+
+    protected void asyncAppend(Waler waler, int n) {
+        final CountDownLatch latch = new CountDownLatch(n);
+        final AtomicInteger failures = new AtomicInteger();
+        final AtomicReference<WalException> error = new AtomicReference<>();
+
+        for (int i = 0; i < n; ++i) {
+            waler.appendAsync("0:" + i, new WalCallback() {
+                @Override
+                public void onComplete(Wal wal, WalException cause) {
+                    if (cause != null || wal == null) {
+                        failures.incrementAndGet();
+                        error.compareAndSet(null, cause);
+                    }
+                    latch.countDown();
+                }
+            });
+        }
+        try {
+            asserts(latch.await(60, TimeUnit.SECONDS), "Async append timeout");
+        } catch (InterruptedException e) {
+            throw new AssertionError("Interrupted", e);
+        }
+        if (error.get() != null) {
+            throw new AssertionError("Async append failed", error.get());
+        }
+        equals(0, failures.get(), "Async append failed");
+    }
+
+    protected void checkAll(Waler waler, int c, int n) {
+        final Set<String> items = new HashSet<>();
+        try (WalIterator it = waler.iterator()) {
+            while (it.hasNext()) {
+                String wal = it.next() + "";
+                asserts(items.add(wal), "Duplicated wal " + wal);
+            }
+        }
+        equals(c * n, items.size(), "Wal lost");
+        for (int i = 0; i < c; ++i) {
+            for (int j = 0; j < n; ++j) {
+                asserts(items.contains(i + ":" + j), "Wal lost: " + i + ":" + j);
+            }
+        }
+    }
+
+    static byte[] checksumData(int i, int size) {
+        final byte[] data = new byte[size];
+        for (int j = 0; j < size; ++j) {
+            data[j] = (byte)(i * 31 + j);
+        }
+        return data;
+    }
+
+    /** The input stream of pattern bytes, which fails at the specified position.
+     */
+    static class PatternStream extends InputStream {
+        final long length, failAt;
+        long pos;
+
+        PatternStream(long length, long failAt) {
+            this.length = length;
+            this.failAt = failAt;
+        }
+
+        static byte pattern(long i) {
+            return (byte)(i * 31 + (i >>> 11));
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            return (read(b, 0, 1) == -1? -1: b[0] & 0xff);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (this.failAt >= 0 && this.pos >= this.failAt) {
+                throw new IOException("Stream failed at " + this.pos);
+            }
+            if (this.pos >= this.length) {
+                return -1;
+            }
+            final int n = (int)Math.min(len, Math.min(this.length - this.pos, 1000));
+            for (int i = 0; i < n; ++i) {
+                b[off + i] = pattern(this.pos + i);
+            }
+            this.pos += n;
+            return n;
+        }
+    }
+
+}
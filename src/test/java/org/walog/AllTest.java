@@ -62,10 +62,20 @@ public class AllTest extends Test {
     protected void prepare() {
         final int i = this.iterate;
 
+        add(new CacheTest(i));
         add(new CrashTest(i));
         add(new IterateOnAppendTest(i));
         add(new ReplicateTest(i));
         add(new WalerFactoryTest(i));
+        add(new AppendTest(i));
+        add(new DurabilityTest(i));
+        add(new AppendFileTest(i));
+        add(new FrameTest(i));
+        add(new StreamTest(i));
+        add(new ReadTest(i));
+        add(new FileLockTest(i));
+        add(new TailStateTest(i));
+        add(new PartitionTest(i));
     }
 
     @Override
@@ -0,0 +1,196 @@
+/**
+ * The MIT License (MIT)
+ * <p>
+ * Copyright (c) 2020 little-pan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.walog;
+
+import org.walog.util.IoUtils;
+import org.walog.util.WalFileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** Test the append file modes: preallocated, memory-mapped, and the recovery
+ * of the zero tail.
+ *
+ * @author little-pan
+ * @since 2026-10-16
+ */
+public class AppendFileTest extends AbstractAppendTest {
+
+    public static void main(String[] args) {
+        for (int i = 0; i < iterates; ++i) {
+            new AppendFileTest(i).test();
+        }
+        completed = true;
+    }
+
+    public AppendFileTest(int iterate) {
+        super(iterate);
+    }
+
+    @Override
+    protected void doTest() {
+        preallocateAppend(true);
+        preallocateAppend(false);
+        mmapAppend(true);
+        mmapAppend(false);
+        zeroTailRecovery(false);
+        zeroTailRecovery(true);
+    }
+
+    protected void preallocateAppend(boolean flushUnlock) {
+        final AppendOptions options = AppendOptions.builder()
+                .preallocate(true).flushUnlock(flushUnlock).build();
+        final long time = rollAppend(options);
+        IoUtils.info("Preallocate append, time %dms, flushUnlock %s", time, flushUnlock);
+    }
+
+    protected void mmapAppend(boolean flushUnlock) {
+        final AppendOptions options = AppendOptions.builder()
+                .mmap(true).flushUnlock(flushUnlock).build();
+        long time = rollAppend(options);
+        IoUtils.info("Mmap append, time %dms, flushUnlock %s", time, flushUnlock);
+
+        final AppendOptions durable = AppendOptions.builder()
+                .mmap(true).flushUnlock(flushUnlock).durable(true).build();
+        time = concurrentAppend(durable, 10, 1000);
+        IoUtils.info("Mmap durable append %d items, time %dms, threads %d, flushUnlock %s",
+                10 * 1000, time, 10, flushUnlock);
+    }
+
+    /** Recover the file with the zero tail, e.g. preallocated or mapped, which keeps
+     * the tail and finds the last wal before it.
+     *
+     * @param zeroBlock the last wal has a zero block
+     */
+    protected void zeroTailRecovery(boolean zeroBlock) {
+        final File dir = getDir();
+        final int n = 100, tail = 1 << 20;
+        final byte[] zeros = new byte[12 << 10];
+
+        try (final Waler waler = WalerFactory.open(dir)) {
+            for (int i = 0; i < n; ++i) {
+                waler.append("zero: i=" + i);
+            }
+            if (zeroBlock) {
+                waler.append(zeros);
+            }
+            waler.sync();
+        }
+        final File file = WalFileUtils.lastFile(dir);
+        final long size = file.length();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(size + tail);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+
+        try (final Waler waler = WalerFactory.open(dir)) {
+            final Wal last = waler.last();
+            if (zeroBlock) {
+                asserts(Arrays.equals(zeros, last.getData()), "Last wal data not matched");
+            } else {
+                equals("zero: i=" + (n - 1), last + "", "Last wal data not matched");
+            }
+            equals(size + tail, file.length(), "Zero tail not kept");
+            final Wal wal = waler.append("begin;");
+            equals(size, wal.getLsn() & Wal.LSN_OFFSET_MASK, "Wal offset not matched");
+            int i = 0;
+            try (WalIterator it = waler.iterator()) {
+                while (it.hasNext()) {
+                    final Wal w = it.next();
+                    if (i < n) {
+                        equals("zero: i=" + i, w + "", "Wal data not matched");
+                    }
+                    ++i;
+                }
+            }
+            equals(n + (zeroBlock? 2: 1), i, "Wal count");
+            equals(wal.getLsn(), waler.last().getLsn(), "Last wal lsn not matched");
+        }
+
+        reset();
+    }
+
+    /** Append into the files at least rolled once, and check the append file
+     * tail truncated after closed.
+     *
+     * @param options the append options
+     * @return the append time
+     */
+    protected long rollAppend(AppendOptions options) {
+        final File dir = getDir();
+        // Roll the append file at least once
+        final int n = (WalFileUtils.ROLL_SIZE >> 20) + 16, size = 1024;
+        final byte[] data = new byte[1000];
+
+        final long start = System.currentTimeMillis();
+        for (int k = 0; k < 2; ++k) {
+            try (final Waler waler = WalerFactory.open(dir, options)) {
+                for (int i = 0; i < n; ++i) {
+                    final List<byte[]> logs = new ArrayList<>(size);
+                    for (int j = 0; j < size; ++j) {
+                        logs.add(data);
+                    }
+                    waler.append(logs);
+                }
+                waler.sync();
+
+                int count = 0;
+                try (WalIterator it = waler.iterator()) {
+                    while (it.hasNext()) {
+                        asserts(Arrays.equals(data, it.next().getData()), "Wal data not matched");
+                        ++count;
+                    }
+                }
+                equals((k + 1) * n * size, count, "Wal lost");
+            }
+
+            // Check the preallocated or mapped tail truncated at close, but kept if the
+            // file lock released before close in flushUnlock mode
+            final File[] files = WalFileUtils.listFiles(dir, true);
+            asserts(files.length >= 2, "Append file not rolled");
+            try (final Waler waler = WalerFactory.open(dir)) {
+                final Wal last = waler.last();
+                final File lastFile = files[files.length - 1];
+                final long end = last.nextLsn() - WalFileUtils.fileLsn(last.getLsn());
+                if (options.isFlushUnlock()) {
+                    asserts(end <= lastFile.length(), "Last wal beyond the file end");
+                } else {
+                    equals(end, lastFile.length(), "Preallocated tail not truncated");
+                }
+            }
+        }
+        final long end = System.currentTimeMillis();
+
+        reset();
+        return (end - start);
+    }
+
+}
@@ -0,0 +1,88 @@
+/**
+ * The MIT License (MIT)
+ * <p>
+ * Copyright (c) 2020 little-pan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.walog;
+
+import org.walog.util.IoUtils;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+
+/** The appender process that appends wals into the data directory shared with
+ * other processes, and optionally holds the append file lock for a while before.
+ *
+ * @author little-pan
+ * @since 2026-10-16
+ */
+public class AppendProc {
+
+    public static void main(String[] args) throws Exception {
+        Thread.currentThread().setName("append-proc");
+
+        final int argc = args.length;
+        Integer appendItems = null;
+        String dataDir = null;
+        long holdLock = 0L;
+
+        for (int i = 0; i < argc; ++i) {
+            String arg = args[i];
+            if ("--append-items".equals(arg)) {
+                appendItems = Integer.decode(args[++i]);
+            } else if ("--data-dir".equals(arg)) {
+                dataDir = args[++i];
+            } else if ("--hold-lock".equals(arg)) {
+                holdLock = Long.decode(args[++i]);
+            }
+        }
+        if (appendItems == null) {
+            IoUtils.error("No arg '--append-items' specified");
+            System.exit(1);
+        }
+        if (dataDir == null) {
+            IoUtils.error("No arg '--data-dir' specified");
+            System.exit(1);
+        }
+
+        if (holdLock > 0L) {
+            try (RandomAccessFile raf = new RandomAccessFile(new File(dataDir, "append.lock"), "rw")) {
+                final FileLock lock = raf.getChannel().lock();
+                IoUtils.info("Hold the append file lock %dms", holdLock);
+                Thread.sleep(holdLock);
+                lock.release();
+            }
+        }
+
+        IoUtils.info("Open in data dir: %s", dataDir);
+        try (Waler waler = WalerFactory.open(dataDir)) {
+            for (int i = 0; i < appendItems; ++i) {
+                Wal wal = waler.append("proc: i=" + i);
+                Test.asserts(wal != null);
+            }
+        }
+        IoUtils.info("Append %d items ok", appendItems);
+    }
+
+}
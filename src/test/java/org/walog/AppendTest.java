@@ -0,0 +1,277 @@
+/**
+ * The MIT License (MIT)
+ * <p>
+ * Copyright (c) 2020 little-pan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.walog;
+
+import org.walog.internal.AppendBatchItem;
+import org.walog.internal.AppendPayloadItem;
+import org.walog.internal.NioWaler;
+import org.walog.util.IoUtils;
+import org.walog.util.MpscRingQueue.WaitStrategy;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/** Test the append modes and batching.
+ *
+ * @author little-pan
+ * @since 2026-10-16
+ */
+public class AppendTest extends AbstractAppendTest {
+
+    public static void main(String[] args) {
+        for (int i = 0; i < iterates; ++i) {
+            new AppendTest(i).test();
+        }
+        completed = true;
+    }
+
+    public AppendTest(int iterate) {
+        super(iterate);
+    }
+
+    @Override
+    protected void doTest() {
+        asyncAppend(true);
+        asyncAppend(false);
+        remoteAsyncAppend();
+        batchAppend(true);
+        batchAppend(false);
+        bufferAppend(true);
+        bufferAppend(false);
+        combineAppend(false);
+        combineAppend(true);
+        adaptiveAppend(false);
+        adaptiveAppend(true);
+        for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+            ringQueueAppend(waitStrategy);
+        }
+    }
+
+    protected void asyncAppend(boolean asyncMode) {
+        final AppendOptions options = AppendOptions.builder().asyncMode(asyncMode? 1: 0).build();
+        final int n = 100_000;
+
+        final long start = System.currentTimeMillis();
+        try (final Waler waler = open(options)) {
+            asyncAppend(waler, n);
+            checkAll(waler, 1, n);
+        }
+        final long end = System.currentTimeMillis();
+        IoUtils.info("Async append %d items, time %dms, async %s", n, (end - start), asyncMode);
+
+        reset();
+    }
+
+    protected void remoteAsyncAppend() {
+        final File dir = getDir();
+        final int n = 10_000;
+        final String[] args = {"--proto", "rmi", "-d", dir + ""};
+
+        final long start = System.currentTimeMillis();
+        try (WalServer server = WalServer.boot(args)) {
+            try (Waler waler = WalDriverManager.connect("walog:rmi://localhost/wal")) {
+                asyncAppend(waler, n);
+                checkAll(waler, 1, n);
+            }
+            asserts(server.isOpen());
+        }
+        final long end = System.currentTimeMillis();
+        IoUtils.info("Remote async append %d items, time %dms", n, (end - start));
+
+        reset();
+    }
+
+    protected void batchAppend(boolean asyncMode) {
+        final AppendOptions options = AppendOptions.builder().asyncMode(asyncMode? 1: 0).build();
+        final int n = 1000, size = 100;
+
+        final long start = System.currentTimeMillis();
+        try (final Waler waler = open(options)) {
+            long lsn = -1L;
+            for (int i = 0; i < n; ++i) {
+                final List<byte[]> logs = new ArrayList<>(size);
+                for (int j = 0; j < size; ++j) {
+                    logs.add((i + ":" + j).getBytes(Wal.CHARSET));
+                }
+                final List<Wal> wals = waler.append(logs);
+                equals(size, wals.size(), "Batch size not matched");
+                for (int j = 0; j < size; ++j) {
+                    final Wal wal = wals.get(j);
+                    asserts(wal.getLsn() > lsn, "Batch wals not in order");
+                    equals(i + ":" + j, wal + "", "Batch wal not matched");
+                    lsn = wal.getLsn();
+                }
+            }
+            equals(0, waler.append(new byte[0][]).size(), "Empty batch");
+            checkAll(waler, n, size);
+        }
+        final long end = System.currentTimeMillis();
+        IoUtils.info("Batch append %d items, time %dms, async %s", n * size, (end - start), asyncMode);
+
+        // All or nothing: the failed entry fails the others, which are skipped then
+        final List<byte[]> logs = new ArrayList<>();
+        for (int j = 0; j < 3; ++j) {
+            logs.add(("failed:" + j).getBytes(Wal.CHARSET));
+        }
+        final AppendBatchItem batch = new AppendBatchItem(logs, Durability.NONE);
+        asserts(batch.tryRun(), "Batch not run");
+        batch.items.get(1).setResult(new IOException("Entry failed"));
+        for (final AppendPayloadItem entry : batch.items) {
+            asserts(entry.isCompleted(), "Entry of the failed batch not completed");
+        }
+        try {
+            batch.get();
+            fail("Batch not failed");
+        } catch (IOException e) {
+            equals("Entry failed", e.getMessage(), "Batch failure");
+        }
+
+        reset();
+    }
+
+    protected void bufferAppend(boolean asyncMode) {
+        final AppendOptions options = AppendOptions.builder().asyncMode(asyncMode? 1: 0).build();
+        final int n = 10_000;
+        final int[] sizes = {0, 1, 250, 4095, 4096, 70000};
+
+        final long start = System.currentTimeMillis();
+        try (final Waler waler = open(options)) {
+            final ByteBuffer direct = ByteBuffer.allocateDirect(100_000);
+            final ByteBuffer heap = ByteBuffer.allocate(100_000);
+            for (int i = 0; i < n; ++i) {
+                final int size = sizes[i % sizes.length];
+                final byte[] data = new byte[size];
+                for (int j = 0; j < size; ++j) {
+                    data[j] = (byte)(i + j);
+                }
+                final ByteBuffer buffer = (i % 2 == 0? direct: heap);
+                buffer.clear();
+                // Note: not from the start of the buffer
+                buffer.position(i % 7);
+                buffer.put(data);
+                buffer.limit(buffer.position());
+                buffer.position(i % 7);
+
+                final long lsn = waler.append(buffer);
+                equals(i % 7, buffer.position(), "Buffer position changed");
+                equals(size, buffer.remaining(), "Buffer limit changed");
+                asserts(Arrays.equals(data, waler.get(lsn).getData()), "Wal data not matched");
+                if (i % 100 == 0) {
+                    final Wal last = waler.last();
+                    equals(lsn, last.getLsn(), "Last wal not matched");
+                    asserts(Arrays.equals(data, last.getData()), "Last wal data not matched");
+                }
+            }
+        }
+        final long end = System.currentTimeMillis();
+        IoUtils.info("Buffer append %d items, time %dms, async %s", n, (end - start), asyncMode);
+
+        reset();
+    }
+
+    protected void combineAppend(boolean durable) {
+        final AppendOptions options = AppendOptions.builder()
+                .asyncMode(0).combine(true).durable(durable).build();
+        final int c = 10, n = durable? 1000: 10000;
+
+        final long time = concurrentAppend(options, c, n);
+        // The wals published by the waiting threads are combined into the batches
+        asserts(this.batches < c * n, "Batches " + this.batches + " not less than items");
+        if (durable) {
+            asserts(this.syncs <= this.batches, "Syncs " + this.syncs + " > batches " + this.batches);
+        }
+        IoUtils.info("Combine append %d items, time %dms, threads %d, durable %s, batches %d",
+                c * n, time, c, durable, this.batches);
+    }
+
+    /** Adaptive batch: the batch limit grows under the bursts of async appends, and
+     * shrinks back to the batch size when the queue shallow.
+     */
+    protected void adaptiveAppend(boolean durable) {
+        final int batchSize = 8, n = 100_000;
+        final AppendOptions options = AppendOptions.builder()
+                .asyncMode(1).batchSize(batchSize).adaptiveBatch(true).durable(durable).build();
+
+        final long start = System.currentTimeMillis();
+        try (final NioWaler waler = (NioWaler) open(options)) {
+            final CountDownLatch latch = new CountDownLatch(n);
+            final AtomicReference<WalException> error = new AtomicReference<>();
+            int maxLimit = 0;
+            for (int i = 0; i < n; ++i) {
+                waler.appendAsync("0:" + i, new WalCallback() {
+                    @Override
+                    public void onComplete(Wal wal, WalException cause) {
+                        if (cause != null || wal == null) {
+                            error.compareAndSet(null, cause);
+                        }
+                        latch.countDown();
+                    }
+                });
+                maxLimit = Math.max(maxLimit, waler.getBatchLimit());
+            }
+            try {
+                asserts(latch.await(60, TimeUnit.SECONDS), "Async append timeout");
+            } catch (InterruptedException e) {
+                throw new AssertionError("Interrupted", e);
+            }
+            if (error.get() != null) {
+                throw new AssertionError("Async append failed", error.get());
+            }
+            asserts(maxLimit > batchSize, "Batch limit not grown: " + maxLimit);
+            asserts(maxLimit <= batchSize << 4, "Batch limit too large: " + maxLimit);
+            IoUtils.info("Adaptive append %d items, max batch limit %d, avg batch size %.1f, durable %s",
+                    n, maxLimit, waler.getAvgBatchSize(), durable);
+
+            // Shallow queue
+            for (int i = 0; i < 10; ++i) {
+                asserts(waler.append("1:" + i) != null);
+            }
+            equals(batchSize, waler.getBatchLimit(), "Batch limit not shrunk");
+        }
+        final long end = System.currentTimeMillis();
+        IoUtils.info("Adaptive append time %dms", end - start);
+
+        reset();
+    }
+
+    protected void ringQueueAppend(WaitStrategy waitStrategy) {
+        final AppendOptions options = AppendOptions.builder()
+                .asyncMode(1).queueSize(100).ringQueue(true).waitStrategy(waitStrategy)
+                .build();
+
+        final long time = concurrentAppend(options, 10, 10000);
+        IoUtils.info("Ring queue append %d items, time %dms, threads %d, wait %s",
+                10 * 10000, time, 10, waitStrategy);
+    }
+
+}
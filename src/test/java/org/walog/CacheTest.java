@@ -0,0 +1,268 @@
+/**
+ * The MIT License (MIT)
+ * <p>
+ * Copyright (c) 2020 little-pan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.walog;
+
+import org.walog.util.IoUtils;
+import org.walog.util.LruCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/** Test the retain and release semantics of the concurrent LruCache.
+ *
+ * @author little-pan
+ * @since 2026-10-16
+ */
+public class CacheTest extends Test {
+
+    public static void main(String[] args) {
+        for (int i = 0; i < iterates; ++i) {
+            new CacheTest(i).test();
+        }
+        completed = true;
+    }
+
+    public CacheTest(int iterate) {
+        super(iterate);
+    }
+
+    @Override
+    protected void doTest() {
+        retainRelease();
+        secondChance();
+        concurrentAccess(16);
+        hitThroughput(16);
+    }
+
+    protected void retainRelease() {
+        final LruCache<Integer, Value> cache = new LruCache<>(4);
+        final Value a = new Value(), b = new Value();
+
+        equals(null, cache.put(1, a), "Put a");
+        equals(2, a.refs(), "Refs after put");
+        a.release();
+        asserts(cache.get(1) == a, "Get a");
+        equals(2, a.refs(), "Refs after get");
+        a.release();
+        // Replaced by b
+        equals(a, cache.put(1, b), "Put b");
+        b.release();
+        equals(0, a.refs(), "Refs of a after replaced");
+        equals(1, b.refs(), "Refs of b after put");
+        // Evicted
+        final List<Value> values = new ArrayList<>();
+        for (int i = 2; i < 6; ++i) {
+            final Value v = new Value();
+            cache.put(i, v);
+            v.release();
+            values.add(v);
+        }
+        equals(null, cache.get(1), "b not evicted");
+        equals(0, b.refs(), "Refs of b after evicted");
+        // Removed and closed
+        equals(values.get(3), cache.remove(5), "Remove");
+        equals(0, values.get(3).refs(), "Refs after removed");
+        cache.close();
+        for (final Value v : values) {
+            equals(0, v.refs(), "Refs after closed");
+        }
+        try {
+            cache.get(2);
+            fail("Get after closed");
+        } catch (IllegalStateException e) {
+            // OK
+        }
+    }
+
+    protected void secondChance() {
+        final int n = 8;
+        final LruCache<Integer, Value> cache = new LruCache<>(n);
+        for (int i = 0; i < n; ++i) {
+            final Value v = new Value();
+            cache.put(i, v);
+            v.release();
+        }
+        for (int i = 0; i < n; i += 2) {
+            cache.get(i);
+        }
+        // The ones not referenced evicted first
+        for (int i = n; i < n + n / 2; ++i) {
+            final Value v = new Value();
+            cache.put(i, v);
+            v.release();
+        }
+        for (int i = 0; i < n; ++i) {
+            final Value v = cache.get(i);
+            equals(i % 2 == 0, v != null, "Hit of " + i);
+            if (v != null) {
+                v.release();
+            }
+        }
+        cache.close();
+    }
+
+    protected void concurrentAccess(final int threads) {
+        final int keys = 64, capacity = 16, ops = 200_000;
+        final LruCache<Integer, Value> cache = new LruCache<>(capacity);
+        final List<Value> values = new ArrayList<>();
+        final AtomicReference<Throwable> cause = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(threads);
+
+        for (int t = 0; t < threads; ++t) {
+            final long seed = t;
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        final Random random = new Random(seed);
+                        for (int i = 0; i < ops && cause.get() == null; ++i) {
+                            final int key = random.nextInt(keys);
+                            Value v = cache.get(key);
+                            if (v == null) {
+                                v = new Value();
+                                synchronized (values) {
+                                    values.add(v);
+                                }
+                                cache.put(key, v);
+                            } else if (random.nextInt(64) == 0) {
+                                cache.remove(key);
+                            }
+                            // Never released while in use
+                            asserts(v.refs() > 0, "Value released in use");
+                            v.release();
+                        }
+                    } catch (Throwable e) {
+                        cause.compareAndSet(null, e);
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            }, "cache-" + t);
+            thread.start();
+        }
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+        if (cause.get() != null) {
+            throw new AssertionError("Concurrent access failed", cause.get());
+        }
+        cache.close();
+        for (final Value v : values) {
+            equals(0, v.refs(), "Refs after closed");
+        }
+        IoUtils.info("Concurrent access: threads %d, values %d", threads, values.size());
+    }
+
+    protected void hitThroughput(final int threads) {
+        final int keys = 16, ops = 2_000_000;
+        final LruCache<Integer, Value> cache = new LruCache<>(keys);
+        for (int i = 0; i < keys; ++i) {
+            final Value v = new Value();
+            cache.put(i, v);
+            v.release();
+        }
+        final CountDownLatch latch = new CountDownLatch(threads);
+        final long start = System.nanoTime();
+        for (int t = 0; t < threads; ++t) {
+            final int k = t;
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < ops; ++i) {
+                            cache.get((k + i) % keys).release();
+                        }
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            }, "cache-" + t);
+            thread.start();
+        }
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+        final long time = (System.nanoTime() - start) / 1000_000L;
+        cache.close();
+        IoUtils.info("Hit throughput: threads %d, gets %d, time %dms, %d gets per second",
+                threads, (long)threads * ops, time, (long)threads * ops * 1000L / Math.max(time, 1L));
+    }
+
+    /** The releaseable value that fails if retained after released to 0.
+     */
+    static class Value implements AutoCloseable, Releaseable {
+
+        final AtomicInteger refCount = new AtomicInteger();
+        volatile boolean retained;
+
+        int refs() {
+            return this.refCount.get();
+        }
+
+        @Override
+        public void retain(int n) {
+            for (int i = 0; i < n; ++i) {
+                retain();
+            }
+        }
+
+        @Override
+        public void retain() {
+            for (;;) {
+                final int n = this.refCount.get();
+                if (n == 0 && this.retained) {
+                    throw new IllegalStateException("Retain after released");
+                }
+                if (this.refCount.compareAndSet(n, n + 1)) {
+                    this.retained = true;
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void release() {
+            if (this.refCount.decrementAndGet() < 0) {
+                throw new IllegalStateException("Released too many times");
+            }
+        }
+
+        @Override
+        public void close() {
+            // NOOP
+        }
+
+    }
+
+}
@@ -0,0 +1,226 @@
+/**
+ * The MIT License (MIT)
+ * <p>
+ * Copyright (c) 2020 little-pan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.walog;
+
+import org.walog.internal.NioWaler;
+import org.walog.util.Crc32c;
+import org.walog.util.IoUtils;
+import org.walog.util.Task;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+
+/** Test the durability of the appends: the group commit, the durability levels,
+ * the timer flush and the checksums.
+ *
+ * @author little-pan
+ * @since 2026-10-16
+ */
+public class DurabilityTest extends AbstractAppendTest {
+
+    public static void main(String[] args) {
+        for (int i = 0; i < iterates; ++i) {
+            new DurabilityTest(i).test();
+        }
+        completed = true;
+    }
+
+    public DurabilityTest(int iterate) {
+        super(iterate);
+    }
+
+    @Override
+    protected void doTest() {
+        durableAppend(true);
+        durableAppend(false);
+        durabilityAppend(true);
+        durabilityAppend(false);
+        timerFlush(true);
+        timerFlush(false);
+        checksumAppend();
+    }
+
+    protected void durableAppend(boolean asyncMode) {
+        final AppendOptions options = AppendOptions.builder()
+                .asyncMode(asyncMode? 1: 0).durable(true).build();
+
+        final int c = 10, n = 1000;
+        final long time = concurrentAppend(options, c, n);
+        // Group commit: one sync per batch, and the async appender batches the wals
+        asserts(this.syncs > 0L, "No syncs");
+        asserts(this.syncs <= this.batches, "Syncs " + this.syncs + " > batches " + this.batches);
+        if (asyncMode) {
+            asserts(this.batches < c * n, "Batches " + this.batches + " not less than items");
+        } else {
+            asserts(this.batches <= c * n, "Batches " + this.batches + " more than items");
+        }
+        IoUtils.info("Durable append %d items, time %dms, threads %d, async %s, batches %d, syncs %d",
+                c * n, time, c, asyncMode, this.batches, this.syncs);
+    }
+
+    protected void durabilityAppend(boolean asyncMode) {
+        final AppendOptions options = AppendOptions.builder().asyncMode(asyncMode? 1: 0).build();
+        final Durability[] levels = Durability.values();
+        final int c = levels.length * 2, n = 1000;
+
+        final long start = System.currentTimeMillis();
+        try (final Waler waler = open(options)) {
+            Task<?>[] workers = new Task[c];
+            for (int i = 0; i < c; ++i) {
+                final int id = i;
+                final Durability durability = levels[i % levels.length];
+                Task<Void> t = newTask(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        for (int j = 0; j < n; ++j) {
+                            Wal wal = waler.append(id + ":" + j, durability);
+                            asserts(wal != null);
+                        }
+                        return null;
+                    }
+                }, "appender-" + i);
+                t.start();
+                workers[i] = t;
+            }
+            for (Task<?> t : workers) {
+                join(t);
+                t.check();
+            }
+            checkAll(waler, c, n);
+        }
+        final long end = System.currentTimeMillis();
+        IoUtils.info("Mixed durability append %d items, time %dms, threads %d, async %s",
+                c * n, (end - start), c, asyncMode);
+
+        reset();
+    }
+
+    protected void timerFlush(boolean asyncMode) {
+        final AppendOptions options = AppendOptions.builder()
+                .asyncMode(asyncMode? 1: 0).syncFlusher(true).build();
+        final File dir = getDir();
+        final long period = AppendOptions.FLUSH_PERIOD;
+
+        try (final NioWaler waler = (NioWaler) WalerFactory.open(dir, options)) {
+            // Flush after the first append, then the next appends are dirty
+            waler.append("begin;");
+            sleep(period * 3);
+            equals(0L, waler.getDirtyBytes(), "dirty bytes after flush");
+            waler.append("update `order` set amount = 1000 where id = 1;");
+            waler.append("commit;");
+            asserts(waler.getDirtyBytes() > 0L, "no dirty bytes after append");
+            // No more append: flushed by the timer
+            sleep(period * 3);
+            equals(0L, waler.getDirtyBytes(), "dirty bytes after timer flush");
+            equals(0L, waler.getDirtyAge(), "dirty age after timer flush");
+            int count = 0;
+            try (WalIterator it = waler.iterator()) {
+                while (it.hasNext()) {
+                    asserts(it.next() != null);
+                    ++count;
+                }
+            }
+            equals(3, count, "wal count");
+        }
+        if (!asyncMode) {
+            // The sync mode appender doesn't flush on the timer by default
+            final AppendOptions noFlusher = AppendOptions.builder().asyncMode(0).build();
+            try (final NioWaler waler = (NioWaler) WalerFactory.open(dir, noFlusher)) {
+                waler.append("begin;");
+                sleep(period * 3);
+                asserts(waler.getDirtyBytes() > 0L, "flushed by the timer without the sync flusher");
+                waler.sync();
+                equals(0L, waler.getDirtyBytes(), "dirty bytes after sync");
+            }
+        }
+
+        reset();
+    }
+
+    protected void checksumAppend() {
+        final File dir = getDir();
+        final int n = 1000;
+        final int[] sizes = {0, 1, 7, 250, 4096, 70000};
+        final Checksum[] checksums = {Checksum.FLETCHER32, Checksum.CRC32C, Checksum.FLETCHER32};
+
+        final long start = System.currentTimeMillis();
+        // Append wals in different checksums into the same files
+        int k = 0;
+        for (Checksum checksum : checksums) {
+            final AppendOptions options = AppendOptions.builder().checksum(checksum).build();
+            try (final Waler waler = WalerFactory.open(dir, options)) {
+                final ByteBuffer direct = ByteBuffer.allocateDirect(100_000);
+                for (int i = 0; i < n; ++i, ++k) {
+                    final byte[] data = checksumData(k, sizes[k % sizes.length]);
+                    final long lsn;
+                    if (k % 2 == 0) {
+                        lsn = waler.append(data).getLsn();
+                    } else {
+                        direct.clear();
+                        direct.put(data).flip();
+                        lsn = waler.append(direct);
+                    }
+                    asserts(Arrays.equals(data, waler.get(lsn).getData()), "Wal data not matched");
+                }
+            }
+        }
+        // Read all after reopen
+        try (final Waler waler = WalerFactory.open(dir);
+             final WalIterator it = waler.iterator()) {
+            int i = 0;
+            while (it.hasNext()) {
+                final Wal wal = it.next();
+                final byte[] data = checksumData(i, sizes[i % sizes.length]);
+                asserts(Arrays.equals(data, wal.getData()), "Wal data not matched at " + i);
+                ++i;
+            }
+            equals(k, i, "Wal count not matched");
+            final byte[] data = checksumData(k, 10);
+            final Wal wal = waler.append(data);
+            asserts(Arrays.equals(data, waler.last().getData()), "Last wal not matched");
+            equals(wal.getLsn(), waler.last().getLsn(), "Last lsn not matched");
+        }
+        // The slicing-by-8 CRC-32C agrees with the runtime one, and consumes the buffer
+        final byte[] data = checksumData(k, 70000);
+        final ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+        direct.put(data).flip();
+        for (ByteBuffer buffer : new ByteBuffer[] { ByteBuffer.wrap(data), direct }) {
+            equals(IoUtils.getCrc32c(data), Checksum.CRC32C.compute(buffer), "CRC-32C not matched");
+            equals(0, buffer.position(), "Buffer position changed in compute");
+            final Crc32c crc32c = new Crc32c();
+            crc32c.update(buffer);
+            equals(IoUtils.getCrc32c(data), (int) crc32c.getValue(), "CRC-32C not matched");
+            equals(buffer.limit(), buffer.position(), "Buffer position not advanced in update");
+        }
+        final long end = System.currentTimeMillis();
+        IoUtils.info("Checksum append %d items, time %dms", k, (end - start));
+
+        reset();
+    }
+
+}
@@ -0,0 +1,177 @@
+/**
+ * The MIT License (MIT)
+ * <p>
+ * Copyright (c) 2020 little-pan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.walog;
+
+import org.walog.internal.NioWaler;
+import org.walog.util.IoUtils;
+import org.walog.util.Proc;
+import org.walog.util.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/** Test the append file lock shared with another process.
+ *
+ * @author little-pan
+ * @since 2026-10-16
+ */
+public class FileLockTest extends AbstractAppendTest {
+
+    public static void main(String[] args) {
+        for (int i = 0; i < iterates; ++i) {
+            new FileLockTest(i).test();
+        }
+        completed = true;
+    }
+
+    public FileLockTest(int iterate) {
+        super(iterate);
+    }
+
+    @Override
+    protected void doTest() {
+        fileLockAppend();
+        batchLockWait(true);
+        batchLockWait(false);
+    }
+
+    /** Append with another process: the file lock changes hands when released by
+     * the auto flush in flushUnlock mode.
+     */
+    protected void fileLockAppend() {
+        final File dir = getDir();
+        final int n = 2000;
+
+        final Proc proc = newAppendProc("--append-items", n + "", "--data-dir", dir + "");
+
+        final AppendOptions options = AppendOptions.builder().flushUnlock(true).build();
+        try (final NioWaler waler = (NioWaler) WalerFactory.open(dir, options)) {
+            Task<Void> joiner = newTask(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    join(proc);
+                    return null;
+                }
+            }, "proc-joiner");
+            try {
+                proc.start();
+            } catch (IOException e) {
+                throw new AssertionError("Start append process failed", e);
+            }
+            joiner.start();
+
+            // Append until the other process completed, and release the file lock for
+            // a while periodically, otherwise only released by the auto flush briefly
+            int i = 0;
+            while (joiner.isAlive()) {
+                asserts(waler.append("main: i=" + i) != null);
+                if (++i % 10 == 0) {
+                    waler.sync();
+                    sleep(1);
+                }
+            }
+            join(joiner);
+            joiner.check();
+            proc.check();
+
+            int count = 0;
+            try (WalIterator it = waler.iterator()) {
+                while (it.hasNext()) {
+                    asserts(it.next() != null);
+                    ++count;
+                }
+            }
+            equals(n + i, count, "wal count");
+            asserts(waler.getFileLockWaits() > 0, "no file lock waits");
+            asserts(waler.getFileLockHandoffs() > 0, "no file lock handoffs");
+            IoUtils.info("File lock append %d + %d items, waits %d, wait time %dms, handoffs %d",
+                    n, i, waler.getFileLockWaits(), waler.getFileLockWaitTime(), waler.getFileLockHandoffs());
+        }
+
+        reset();
+    }
+
+    /** Append a batch while another process holds the append file lock: the entries
+     * of the batch wait for the file lock until the append timeout.
+     */
+    protected void batchLockWait(boolean asyncMode) {
+        final File dir = getDir();
+        final long hold = 500L;
+        final Proc proc = newAppendProc("--append-items", "0", "--data-dir", dir + "",
+                "--hold-lock", hold + "");
+        try {
+            proc.start();
+        } catch (IOException e) {
+            throw new AssertionError("Start append process failed", e);
+        }
+        // Wait until the file lock held by the other process
+        final File lockFile = new File(dir, "append.lock");
+        try (RandomAccessFile raf = new RandomAccessFile(lockFile, "rw")) {
+            final long deadline = System.currentTimeMillis() + 10000L;
+            for (FileLock lock; (lock = raf.getChannel().tryLock()) != null; ) {
+                lock.release();
+                if (System.currentTimeMillis() > deadline) {
+                    fail("File lock not held by the append process");
+                }
+                sleep(1L);
+            }
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+
+        final AppendOptions options = AppendOptions.builder().asyncMode(asyncMode? 1: 0).build();
+        final long start = System.currentTimeMillis();
+        try (final Waler waler = WalerFactory.open(dir, options)) {
+            final List<Wal> wals = waler.append(new byte[][] {
+                    "begin;".getBytes(Wal.CHARSET), "commit;".getBytes(Wal.CHARSET)
+            });
+            equals(2, wals.size(), "Batch size not matched");
+            equals("commit;", waler.last() + "", "Last wal not matched");
+        }
+        final long time = System.currentTimeMillis() - start;
+        join(proc);
+        proc.check();
+        IoUtils.info("Batch lock wait %dms, async %s", time, asyncMode);
+
+        reset();
+    }
+
+    protected Proc newAppendProc(String... args) {
+        final Proc proc = newProc(AppendProc.class.getName(), args);
+        final String curDir = System.getProperty("user.dir");
+        proc.setWorkDir(curDir);
+        final String target = curDir + File.separator + "target";
+        proc.setProperties(new String[]{"-classpath",
+                target + File.separator + "classes" + File.pathSeparator + target + File.separator + "test-classes"
+        });
+        return proc;
+    }
+
+}
@@ -0,0 +1,172 @@
+/**
+ * The MIT License (MIT)
+ * <p>
+ * Copyright (c) 2020 little-pan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.walog;
+
+import org.walog.util.IoUtils;
+import org.walog.util.WalFileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Test the batch frames, compressed or not, and the recovery of the partial frame.
+ *
+ * @author little-pan
+ * @since 2026-10-16
+ */
+public class FrameTest extends AbstractAppendTest {
+
+    public static void main(String[] args) {
+        for (int i = 0; i < iterates; ++i) {
+            new FrameTest(i).test();
+        }
+        completed = true;
+    }
+
+    public FrameTest(int iterate) {
+        super(iterate);
+    }
+
+    @Override
+    protected void doTest() {
+        frameAppend(true, 6);
+        frameAppend(false, 6);
+        frameAppend(true, 0);
+        frameAppend(false, 0);
+        frameRecovery();
+    }
+
+    protected void frameAppend(boolean asyncMode, int compressLevel) {
+        final AppendOptions options = AppendOptions.builder().asyncMode(asyncMode? 1: 0)
+                .batchFrame(true).compressLevel(compressLevel).frameMinBatch(2).build();
+        final File dir = getDir();
+        final int c = 10, n = 1000, b = 10;
+
+        final long start = System.currentTimeMillis();
+        final List<Long> lsns = new ArrayList<>();
+        try (final Waler waler = WalerFactory.open(dir, options)) {
+            // Batch append: compressed into frames
+            for (int i = 0; i < c; ++i) {
+                for (int j = 0; j < n; j += b) {
+                    final List<byte[]> logs = new ArrayList<>(b);
+                    for (int k = j; k < j + b; ++k) {
+                        logs.add(compressData(i, k).getBytes(Wal.CHARSET));
+                    }
+                    final List<Wal> wals = waler.append(logs);
+                    equals(b, wals.size(), "Batch wals size");
+                    for (int k = 0; k < b; ++k) {
+                        final Wal wal = wals.get(k);
+                        lsns.add(wal.getLsn());
+                        final Wal read = waler.get(wal.getLsn());
+                        equals(compressData(i, j + k), read + "", "Wal data not matched");
+                        if (k < b - 1) {
+                            equals(wals.get(k + 1).getLsn(), wal.nextLsn(), "Next lsn not matched");
+                        }
+                    }
+                }
+            }
+            // Small batch: not in frame
+            waler.append("commit;");
+            equals("commit;", waler.last() + "", "Last wal not matched");
+        }
+
+        // Reopen: recovery, iterate and append after frames
+        long size = 0;
+        for (File file : WalFileUtils.listFiles(dir)) {
+            size += file.length();
+        }
+        try (final Waler waler = WalerFactory.open(dir, options)) {
+            int k = 0;
+            try (WalIterator it = waler.iterator()) {
+                while (it.hasNext()) {
+                    final Wal wal = it.next();
+                    if (k < lsns.size()) {
+                        equals((long)lsns.get(k), wal.getLsn(), "Wal lsn changed");
+                        equals(compressData(k / n, k % n), wal + "", "Wal data not matched");
+                    }
+                    ++k;
+                }
+            }
+            equals(c * n + 1, k, "Wal count");
+            final Wal wal = waler.append("begin;");
+            equals("begin;", waler.get(wal.getLsn()) + "", "Wal data not matched");
+            equals(wal.getLsn(), waler.last().getLsn(), "Last wal not matched");
+        }
+        final long end = System.currentTimeMillis();
+        IoUtils.info("Frame append %d items, size %d, time %dms, async %s, compress level %d",
+                c * n, size, (end - start), asyncMode, compressLevel);
+
+        reset();
+    }
+
+    protected void frameRecovery() {
+        final AppendOptions options = AppendOptions.builder().batchFrame(true).build();
+        final File dir = getDir();
+        final int n = 100, b = 10;
+
+        try (final Waler waler = WalerFactory.open(dir, options)) {
+            for (int j = 0; j < n; j += b) {
+                final List<byte[]> logs = new ArrayList<>(b);
+                for (int k = j; k < j + b; ++k) {
+                    logs.add(compressData(0, k).getBytes(Wal.CHARSET));
+                }
+                waler.append(logs);
+            }
+        }
+        // Partial frame: the last frame is dropped in recovery
+        final File file = WalFileUtils.lastFile(dir);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 5);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        try (final Waler waler = WalerFactory.open(dir, options)) {
+            final Wal wal = waler.append("begin;");
+            int k = 0;
+            try (WalIterator it = waler.iterator()) {
+                while (it.hasNext()) {
+                    final Wal w = it.next();
+                    if (k < n - b) {
+                        equals(compressData(0, k), w + "", "Wal data not matched");
+                    } else {
+                        equals(wal.getLsn(), w.getLsn(), "Wal lsn not matched");
+                    }
+                    ++k;
+                }
+            }
+            equals(n - b + 1, k, "Wal count");
+        }
+
+        reset();
+    }
+
+    static String compressData(int i, int j) {
+        return "update `order` set amount = " + (i * 1000 + j) + " where id = " + j + ";";
+    }
+
+}
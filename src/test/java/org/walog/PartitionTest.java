@@ -0,0 +1,268 @@
+/**
+ * The MIT License (MIT)
+ * <p>
+ * Copyright (c) 2020 little-pan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.walog;
+
+import org.walog.util.IoUtils;
+import org.walog.util.Task;
+import org.walog.util.WalFileUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/** Test the partitioned waler.
+ *
+ * @author little-pan
+ * @since 2026-10-16
+ */
+public class PartitionTest extends Test {
+
+    public static void main(String[] args) {
+        for (int i = 0; i < iterates; ++i) {
+            new PartitionTest(i).test();
+        }
+        completed = true;
+    }
+
+    public PartitionTest(int iterate) {
+        super(iterate);
+    }
+
+    @Override
+    protected void doTest() {
+        keyedAppend(4, 8, 10000);
+        keyedAppend(1, 2, 1000);
+        roundRobinAppend(4, 10000);
+        mergedIterate(3, 300);
+    }
+
+    protected void keyedAppend(final int partitions, final int c, final int n) {
+        final File dir = getDir();
+
+        final long start = System.currentTimeMillis();
+        try (final PartitionedWaler waler = WalerFactory.openPartitioned(dir, partitions)) {
+            Task<?>[] workers = new Task[c];
+            for (int i = 0; i < c; ++i) {
+                final int id = i;
+                Task<Void> t = newTask(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        for (int j = 0; j < n; ++j) {
+                            String log = id + ":" + j;
+                            Wal wal = waler.append(id, log);
+                            Test.equals(id % partitions, PartitionedWaler.partition(wal.getLsn()),
+                                    "Partition not matched");
+                            Test.equals(log, waler.get(wal.getLsn()) + "", "Wal not matched");
+                        }
+                        return null;
+                    }
+                }, "appender-" + i);
+                t.start();
+                workers[i] = t;
+            }
+            for (Task<?> t : workers) {
+                join(t);
+                t.check();
+            }
+
+            // Check order of each key
+            final Map<Integer, Integer> nexts = new HashMap<>();
+            int count = 0, partition = 0;
+            try (WalIterator it = waler.iterator()) {
+                while (it.hasNext()) {
+                    final Wal wal = it.next();
+                    final int p = PartitionedWaler.partition(wal.getLsn());
+                    asserts(p >= partition, "Partition not in order");
+                    partition = p;
+
+                    final String[] parts = (wal + "").split(":");
+                    final int id = Integer.parseInt(parts[0]), j = Integer.parseInt(parts[1]);
+                    final Integer expected = nexts.get(id);
+                    equals(expected == null? 0: expected, j, "Wal of key not in order");
+                    nexts.put(id, j + 1);
+                    ++count;
+                }
+            }
+            equals(c * n, count, "Wal lost");
+
+            // Check next and last
+            final Wal first = waler.first();
+            equals(0, PartitionedWaler.partition(first.getLsn()), "First partition");
+            final Wal second = waler.next(first);
+            equals(first.nextLsn(), second.getLsn(), "Next wal lsn");
+            final Wal last = waler.last();
+            equals(partitions - 1, PartitionedWaler.partition(last.getLsn()), "Last partition");
+            asserts(waler.next(last) == null, "Next of last wal");
+        }
+        final long end = System.currentTimeMillis();
+        IoUtils.info("Keyed append %d items, time %dms, threads %d, partitions %d",
+                c * n, (end - start), c, partitions);
+
+        cleanup();
+        getDir();
+    }
+
+    protected void roundRobinAppend(final int partitions, final int n) {
+        final File dir = getDir();
+
+        try (final PartitionedWaler waler = WalerFactory.openPartitioned(dir, partitions)) {
+            final int[] counts = new int[partitions];
+            for (int i = 0; i < n; ++i) {
+                final Wal wal = waler.append("0:" + i);
+                ++counts[PartitionedWaler.partition(wal.getLsn())];
+            }
+            final List<byte[]> logs = new ArrayList<>();
+            for (int i = 0; i < 10; ++i) {
+                logs.add(("1:" + i).getBytes(Wal.CHARSET));
+            }
+            final List<Wal> wals = waler.append(logs);
+            final int p = PartitionedWaler.partition(wals.get(0).getLsn());
+            for (Wal wal : wals) {
+                equals(p, PartitionedWaler.partition(wal.getLsn()), "Batch partition");
+            }
+            for (int count : counts) {
+                equals(n / partitions, count, "Round-robin not balanced");
+            }
+
+            // Iterate from the middle
+            final long lsn = wals.get(5).getLsn();
+            int count = 0;
+            try (WalIterator it = waler.iterator(lsn)) {
+                while (it.hasNext()) {
+                    final Wal wal = it.next();
+                    asserts(PartitionedWaler.partition(wal.getLsn()) >= p, "Partition not in order");
+                    ++count;
+                }
+            }
+            int expected = 5;
+            for (int i = p + 1; i < partitions; ++i) {
+                expected += counts[i];
+            }
+            equals(expected, count, "Iterate from lsn");
+        }
+
+        // Reopen
+        try (final PartitionedWaler waler = WalerFactory.openPartitioned(dir, partitions)) {
+            int count = 0;
+            try (WalIterator it = waler.iterator()) {
+                while (it.hasNext()) {
+                    it.next();
+                    ++count;
+                }
+            }
+            equals(n + 10, count, "Wal lost after reopen");
+        }
+
+        cleanup();
+        getDir();
+    }
+
+    /** The timeout iterator follows the appends to all partitions, and the purge is
+     * done in the partition of the file lsn.
+     */
+    protected void mergedIterate(final int partitions, final int n) {
+        final File dir = getDir();
+
+        try (final PartitionedWaler waler = WalerFactory.openPartitioned(dir, partitions)) {
+            for (int i = 0; i < n; ++i) {
+                waler.append(i, "0:" + i);
+            }
+            final Wal first = waler.first();
+            Task<Void> appender = newTask(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    sleep(100);
+                    for (int i = 0; i < n; ++i) {
+                        waler.append(i, "1:" + i);
+                    }
+                    return null;
+                }
+            }, "appender");
+
+            final long[] lsns = new long[partitions];
+            final int[] counts = new int[partitions];
+            try (WalIterator it = waler.iterator(first.getLsn(), 10000)) {
+                appender.start();
+                for (int k = 0; k < n << 1; ++k) {
+                    asserts(it.hasNext(), "No next wal");
+                    final Wal wal = it.next();
+                    final int p = PartitionedWaler.partition(wal.getLsn());
+                    asserts(lsns[p] == 0L || wal.getLsn() > lsns[p], "Wal not in order in partition");
+                    lsns[p] = wal.getLsn();
+                    final int i = Integer.parseInt((wal + "").split(":")[1]);
+                    equals(i % partitions, p, "Partition not matched");
+                    ++counts[p];
+                }
+                join(appender);
+                appender.check();
+            }
+            for (int count : counts) {
+                equals((n << 1) / partitions, count, "Merged iterate count");
+            }
+            try (WalIterator it = waler.iterator(first.getLsn(), 100)) {
+                for (int k = 0; k < n << 1; ++k) {
+                    asserts(it.hasNext(), "No next wal");
+                    it.next();
+                }
+                try {
+                    it.hasNext();
+                    fail("Merged iterate not timeout");
+                } catch (TimeoutWalException e) {
+                    // OK
+                }
+            }
+
+            // Purge in the partition of the file lsn only
+            final long fileLsn = PartitionedWaler.lsn(1, 0L);
+            asserts(waler.purgeTo(WalFileUtils.filename(fileLsn)), "Purge in partition");
+            final long[] fileLsns = new long[partitions];
+            Arrays.fill(fileLsns, -1L);
+            fileLsns[2] = PartitionedWaler.lsn(2, 0L);
+            asserts(waler.purgeTo(fileLsns), "Purge in partitions");
+            try {
+                waler.purgeTo(new long[] {fileLsn});
+                fail("Purge lsns not matched the partitions");
+            } catch (IllegalArgumentException e) {
+                // OK
+            }
+            int count = 0;
+            try (WalIterator it = waler.iterator()) {
+                while (it.hasNext()) {
+                    it.next();
+                    ++count;
+                }
+            }
+            equals(n << 1, count, "Wal lost after purge");
+        }
+
+        cleanup();
+        getDir();
+    }
+
+}
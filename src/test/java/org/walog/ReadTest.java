@@ -0,0 +1,330 @@
+/**
+ * The MIT License (MIT)
+ * <p>
+ * Copyright (c) 2020 little-pan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.walog;
+
+import org.walog.internal.BlockCache;
+import org.walog.internal.NioWalFile;
+import org.walog.internal.NioWaler;
+import org.walog.util.IoUtils;
+import org.walog.util.Task;
+import org.walog.util.WalFileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+
+/** Test the read modes: memory-mapped, block cache and read-ahead.
+ *
+ * @author little-pan
+ * @since 2026-10-16
+ */
+public class ReadTest extends AbstractAppendTest {
+
+    public static void main(String[] args) {
+        for (int i = 0; i < iterates; ++i) {
+            new ReadTest(i).test();
+        }
+        completed = true;
+    }
+
+    public ReadTest(int iterate) {
+        super(iterate);
+    }
+
+    @Override
+    protected void doTest() {
+        mmapRead();
+        blockCacheRead();
+        readAheadIterate();
+    }
+
+    /** Read the sealed file in memory-mapped mode, and check the wals against the ones
+     * read from the block cache.
+     */
+    protected void mmapRead() {
+        final File dir = getDir();
+        final int n = 1000;
+        final int[] sizes = {0, 1, 7, 250, 4096, 70000};
+        final int length = (1 << 20) + 7;
+
+        final File file;
+        try (final Waler waler = WalerFactory.open(dir)) {
+            for (int i = 0; i < n; ++i) {
+                waler.append(checksumData(i, sizes[i % sizes.length]));
+            }
+            waler.append(new PatternStream(length, -1), length);
+            waler.append("commit;");
+            file = WalFileUtils.lastFile(dir);
+        }
+        // Seal the file
+        final long fileLsn = WalFileUtils.lsn(file.getName());
+        final File next = new File(dir, WalFileUtils.filename(WalFileUtils.nextFileLsn(fileLsn)));
+        try {
+            asserts(next.createNewFile(), "Create the next file");
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        try (NioWalFile walFile = new NioWalFile(file);
+             NioWalFile mapFile = new NioWalFile(file)) {
+            // Retained as in the wal cache, then the stream closed not closing the file
+            mapFile.retain();
+            mapFile.setReadMmap(true);
+            asserts(mapFile.isReadMmap(), "Read mmap not set");
+            int offset = 0, i = 0;
+            for (SimpleWal wal; (wal = walFile.get(offset)) != null; ++i) {
+                final SimpleWal mapped = mapFile.get(offset);
+                equals(wal.getLsn(), mapped.getLsn(), "Mapped wal lsn not matched");
+                asserts(Arrays.equals(wal.getData(), mapped.getData()), "Mapped wal data not matched at " + i);
+                if (i < n) {
+                    asserts(Arrays.equals(checksumData(i, sizes[i % sizes.length]), mapped.getData()),
+                            "Wal data not matched at " + i);
+                } else if (i == n) {
+                    try (InputStream in = mapFile.openStream(offset)) {
+                        long k = 0L;
+                        for (int b; (b = in.read()) != -1; ++k) {
+                            equals(PatternStream.pattern(k), (byte)b, "Mapped stream data not matched");
+                        }
+                        equals(length, k, "Mapped stream length");
+                    }
+                }
+                offset = mapped.nextOffset();
+            }
+            equals(n + 2, i, "Wal count");
+            equals(null, mapFile.get(offset), "Wal beyond the sealed file");
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+
+        reset();
+    }
+
+    /** Read through the global block cache shared by walers, and check that a scan
+     * doesn't evict the hot blocks.
+     */
+    protected void blockCacheRead() {
+        // Scan resistance
+        final File file = new File(getDir(), "block.cache");
+        final BlockCache cache = new BlockCache(1 << 20, false);
+        try {
+            asserts(file.createNewFile(), "Create the block file");
+            final BlockCache.FileId fileId = BlockCache.FileId.of(file, 0L);
+            final int hot = 32, scan = 4096;
+            for (int r = 0; r < 3; ++r) {
+                for (int i = 0; i < hot; ++i) {
+                    if (cache.get(fileId, i) == null) {
+                        asserts(cache.put(fileId, i, cache.allocate()), "Hot block not admitted");
+                    }
+                }
+            }
+            equals(hot * 2, cache.getHits(), "Hot block hits");
+            for (int i = hot; i < hot + scan; ++i) {
+                if (cache.get(fileId, i) == null) {
+                    cache.put(fileId, i, cache.allocate());
+                }
+            }
+            asserts(cache.getRejections() > 0L, "No scanned block rejected");
+            asserts(cache.getSize() <= cache.getCapacity(), "Cache size over capacity");
+            for (int i = 0; i < hot; ++i) {
+                asserts(cache.get(fileId, i) != null, "Hot block evicted by scan: " + i);
+            }
+            cache.invalidate(fileId, hot);
+            equals(hot * (4 << 10), cache.getSize(), "Cache size after invalidated");
+            IoUtils.info("Scan resistance: %s", cache);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+
+        final BlockCache global = BlockCache.getInstance();
+        if (global == null) {
+            IoUtils.info("Global block cache disabled");
+            reset();
+            return;
+        }
+        // Note: the blocks of the files deleted by other tests are admitted frequently
+        global.clear();
+        // Same file names in different walers, and the sealed files created again
+        final int n = 1000;
+        for (int r = 0; r < 2; ++r) {
+            final File dirA = getDir(getDir(), "a"), dirB = getDir(getDir(), "b");
+            try (final Waler a = WalerFactory.open(dirA);
+                 final Waler b = WalerFactory.open(dirB)) {
+                for (int i = 0; i < n; ++i) {
+                    a.append(checksumData(i + r, 100));
+                    b.append(checksumData(i + r + 1, 100));
+                }
+            }
+            try {
+                final String next = WalFileUtils.filename(WalFileUtils.nextFileLsn(0L));
+                asserts(new File(dirA, next).createNewFile(), "Create the next file");
+                asserts(new File(dirB, next).createNewFile(), "Create the next file");
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+            for (int k = 0; k < 2; ++k) {
+                final long hits = global.getHits();
+                // Reopen: the blocks outlive the files closed
+                try (final Waler a = WalerFactory.open(dirA);
+                     final Waler b = WalerFactory.open(dirB);
+                     WalIterator ia = a.iterator(); WalIterator ib = b.iterator()) {
+                    for (int i = 0; i < n; ++i) {
+                        asserts(ia.hasNext() && ib.hasNext(), "No wal at " + i);
+                        asserts(Arrays.equals(checksumData(i + r, 100), ia.next().getData()),
+                                "Wal data not matched in a at " + i);
+                        asserts(Arrays.equals(checksumData(i + r + 1, 100), ib.next().getData()),
+                                "Wal data not matched in b at " + i);
+                    }
+                }
+                if (k > 0) {
+                    asserts(global.getHits() > hits, "No block cache hit");
+                }
+            }
+            // The blocks of the cleared files dropped
+            final long size = global.getSize();
+            try (final Waler a = WalerFactory.open(dirA)) {
+                asserts(a.clear(), "Clear wals");
+            }
+            asserts(global.getSize() < size, "Blocks of the cleared files cached");
+            cleanup();
+        }
+        IoUtils.info("Global block cache: %s", global);
+        getDir();
+    }
+
+    /** Iterate the wals across files in read-ahead mode, also while appending into the
+     * last file, and walk the file in small read-ahead windows with or without prefetch.
+     */
+    protected void readAheadIterate() {
+        final File dir = getDir();
+        final int n = 2000;
+        final int[] sizes = {0, 1, 7, 250, 4096, 9000};
+        final int length = (3 << 20) + 7;
+
+        // The first file sealed, and the streamed record crossing the windows
+        final File file;
+        try (final Waler waler = WalerFactory.open(dir)) {
+            for (int i = 0; i < n; ++i) {
+                waler.append(checksumData(i, sizes[i % sizes.length]));
+            }
+            waler.append(new PatternStream(length, -1), length);
+            file = WalFileUtils.lastFile(dir);
+        }
+        // The next file: written in another directory, for the wal offsets are in file
+        final File other = getDir(getDir(), "next");
+        try (final Waler waler = WalerFactory.open(other)) {
+            for (int i = n; i < n * 2; ++i) {
+                waler.append(checksumData(i, sizes[i % sizes.length]));
+            }
+        }
+        final long fileLsn = WalFileUtils.lsn(file.getName());
+        final File next = new File(dir, WalFileUtils.filename(WalFileUtils.nextFileLsn(fileLsn)));
+        asserts(WalFileUtils.lastFile(other).renameTo(next), "Move the next file");
+
+        try (final NioWaler waler = (NioWaler) WalerFactory.open(dir)) {
+            waler.setReadAhead(16 << 10);
+            int i = 0;
+            try (final WalIterator it = waler.iterator()) {
+                while (it.hasNext()) {
+                    checkReadAhead(it.next(), i++, n, sizes, length);
+                }
+            }
+            equals(n * 2 + 1, i, "Wal count");
+
+            // Iterate while appending: the sealed file is read ahead, and the last file
+            // is read from the shared wal file which follows the appends
+            final int m = 1000;
+            final Task<Void> appender = newTask(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int i = n * 2; i < n * 2 + m; ++i) {
+                        waler.append(checksumData(i, sizes[i % sizes.length]));
+                    }
+                    return null;
+                }
+            }, "appender");
+            appender.start();
+            final long deadline = System.currentTimeMillis() + 30000L;
+            long lsn = -1L;
+            for (i = 0; i < n * 2 + m + 1; ) {
+                try (final WalIterator it = (lsn == -1L? waler.iterator(): waler.iterator(lsn))) {
+                    // Skip the last wal read
+                    if (lsn != -1L) {
+                        asserts(it.hasNext(), "No last wal read");
+                        it.next();
+                    }
+                    while (it.hasNext()) {
+                        final Wal wal = it.next();
+                        checkReadAhead(wal, i++, n, sizes, length);
+                        lsn = wal.getLsn();
+                    }
+                }
+                asserts(System.currentTimeMillis() < deadline, "Iterate on append timeout");
+                sleep(1L);
+            }
+            join(appender);
+            equals(n * 2 + m + 1, i, "Wal count on append");
+        }
+
+        for (final boolean prefetch : new boolean[] {false, true}) {
+            try (NioWalFile walFile = new NioWalFile(file);
+                 NioWalFile raFile = new NioWalFile(file)) {
+                raFile.setReadAhead(16 << 10, prefetch);
+                asserts(raFile.isReadAhead(), "Read ahead not set");
+                int offset = 0, i = 0;
+                for (SimpleWal wal; (wal = walFile.get(offset)) != null; ++i) {
+                    final SimpleWal read = raFile.get(offset);
+                    equals(wal.getLsn(), read.getLsn(), "Read-ahead wal lsn not matched");
+                    asserts(Arrays.equals(wal.getData(), read.getData()),
+                            "Read-ahead wal data not matched at " + i);
+                    offset = read.nextOffset();
+                }
+                equals(n + 1, i, "Wal count");
+                equals(null, raFile.get(offset), "Wal beyond the file");
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        }
+        IoUtils.info("Read-ahead iterate ok");
+
+        reset();
+    }
+
+    static void checkReadAhead(Wal wal, int i, int n, int[] sizes, int length) {
+        if (i == n) {
+            final byte[] data = wal.getData();
+            equals(length, data.length, "Streamed wal length");
+            for (int j = 0; j < length; j += 4099) {
+                equals(PatternStream.pattern(j), data[j], "Streamed wal data not matched");
+            }
+        } else {
+            final int k = (i < n? i: i - 1);
+            asserts(Arrays.equals(checksumData(k, sizes[k % sizes.length]), wal.getData()),
+                    "Wal data not matched at " + i);
+        }
+    }
+
+}
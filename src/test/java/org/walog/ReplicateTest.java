@@ -27,6 +27,8 @@ package org.walog;
 import org.walog.util.IoUtils;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 public class ReplicateTest extends Test {
@@ -64,6 +66,18 @@ public class ReplicateTest extends Test {
         cleanup();
         inprocTest(dataBaseLen, items, false);
 
+        // Compressed frames
+        final int compressLevel = AppendOptions.COMPRESS_LEVEL;
+        AppendOptions.COMPRESS_LEVEL = 6;
+        try {
+            cleanup();
+            inprocTest(dataBaseLen, 1_00_000, false);
+            cleanup();
+            remoteTest(dataBaseLen, 1_00_000, false);
+        } finally {
+            AppendOptions.COMPRESS_LEVEL = compressLevel;
+        }
+
         dataBaseLen = (4 << 10) - 30;
         items = 1_00_000;
         cleanup();
@@ -240,6 +254,16 @@ public class ReplicateTest extends Test {
                 final boolean remote = "rmi".equals(tag);
                 boolean downed = false;
                 while (i < n) {
+                    if (AppendOptions.COMPRESS_LEVEL > 0) {
+                        // Batch append for the compressed frames
+                        final List<byte[]> logs = new ArrayList<>();
+                        for (int k = i, m = Math.min(n, i + 16); k < m; ++k) {
+                            logs.add((prefix + k).getBytes(Wal.CHARSET));
+                        }
+                        this.master.append(logs);
+                        i += logs.size();
+                        continue;
+                    }
                     if (testMasterDown && !downed && i % (remote? 1000: 100) == 0) {
                         down.run();
                         downed = true;
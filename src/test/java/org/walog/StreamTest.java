@@ -0,0 +1,199 @@
+/**
+ * The MIT License (MIT)
+ * <p>
+ * Copyright (c) 2020 little-pan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.walog;
+
+import org.walog.util.IoUtils;
+import org.walog.util.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+
+/** Test the streamed records, and the aborted ones read by another waler.
+ *
+ * @author little-pan
+ * @since 2026-10-16
+ */
+public class StreamTest extends AbstractAppendTest {
+
+    public static void main(String[] args) {
+        for (int i = 0; i < iterates; ++i) {
+            new StreamTest(i).test();
+        }
+        completed = true;
+    }
+
+    public StreamTest(int iterate) {
+        super(iterate);
+    }
+
+    @Override
+    protected void doTest() {
+        streamAppend(false);
+        streamAppend(true);
+        abortedStreamRead(false);
+        abortedStreamRead(true);
+    }
+
+    protected void streamAppend(boolean mmap) {
+        final AppendOptions options = AppendOptions.builder().mmap(mmap).build();
+        final File dir = getDir();
+        // Bigger than the 16MB length-prefix limit
+        final int length = (20 << 20) + 7;
+
+        final long lsn;
+        try (final Waler waler = WalerFactory.open(dir, options)) {
+            waler.append("begin;");
+            lsn = waler.append(new PatternStream(length, -1), length);
+            // The failed stream is aborted and skipped
+            try {
+                waler.append(new PatternStream(length, 3 << 20), length);
+                fail("Append the failed stream");
+            } catch (WalException e) {
+                // OK
+            }
+            waler.append("commit;");
+            checkStream(waler, lsn, length);
+        }
+
+        // Recovery
+        try (final Waler waler = WalerFactory.open(dir, options)) {
+            checkStream(waler, lsn, length);
+            equals("commit;", waler.last().toString(), "last wal after recovery");
+            final long end = waler.append(new PatternStream(length, -1), length);
+            checkStream(waler, end, length);
+        }
+        try (final Waler waler = WalerFactory.open(dir, options)) {
+            Wal last = waler.last();
+            equals(length, last.getData().length, "last streamed wal after recovery");
+        }
+        IoUtils.info("Stream append ok, mmap %s", mmap);
+
+        reset();
+    }
+
+    /** Abort the streamed records while a reader of another waler iterates the append
+     * file: the file is kept append-only, so that the blocks cached by the reader are
+     * never stale, and the aborted records are skipped by the reader and recovery.
+     */
+    protected void abortedStreamRead(boolean mmap) {
+        final AppendOptions options = AppendOptions.builder().mmap(mmap).tailState(false).build();
+        final File dir = getDir();
+        final int n = 30, length = (2 << 20) + 7;
+
+        try (final Waler waler = WalerFactory.open(dir, options);
+             final Waler reader = WalerFactory.open(dir, options)) {
+            final Wal first = waler.append("0");
+            Task<Void> t = newTask(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    try (WalIterator it = reader.iterator(first.getLsn(), 10000L)) {
+                        for (int i = 0; i < n; ++i) {
+                            asserts(it.hasNext(), "No next wal read concurrently");
+                            Test.equals(i + "", it.next().toString(), "Wal read concurrently");
+                        }
+                    }
+                    return null;
+                }
+            }, "reader");
+            t.start();
+            for (int i = 1; i < n; ++i) {
+                // Aborted in the first fragment or after some fragments written
+                try {
+                    waler.append(new PatternStream(length, (i % 3) << 20), length);
+                    fail("Append the failed stream");
+                } catch (WalException e) {
+                    // OK
+                }
+                sleep(1L);
+                waler.append(i + "");
+            }
+            join(t);
+            // The aborted tail
+            try {
+                waler.append(new PatternStream(length, 1 << 20), length);
+                fail("Append the failed stream");
+            } catch (WalException e) {
+                // OK
+            }
+            equals(n - 1 + "", waler.last().toString(), "last wal");
+        }
+
+        // Recovery from the aborted tail
+        try (final Waler waler = WalerFactory.open(dir, options)) {
+            equals(n - 1 + "", waler.last().toString(), "last wal after recovery");
+            final long lsn = waler.append(new PatternStream(length, -1), length);
+            waler.append("commit;");
+            int i = 0;
+            try (WalIterator it = waler.iterator()) {
+                for (; i < n; ++i) {
+                    asserts(it.hasNext(), "No next wal");
+                    equals(i + "", it.next().toString(), "Wal read after recovery");
+                }
+                asserts(it.hasNext(), "No streamed wal");
+                equals(lsn, it.next().getLsn(), "Streamed wal lsn");
+                asserts(it.hasNext(), "No commit wal");
+                equals("commit;", it.next().toString(), "Commit wal");
+                asserts(!it.hasNext(), "More wals after commit");
+            }
+        }
+        IoUtils.info("Aborted stream read ok, mmap %s", mmap);
+
+        reset();
+    }
+
+    protected void checkStream(Waler waler, long lsn, int length) {
+        try (InputStream in = waler.openStream(lsn)) {
+            final byte[] buffer = new byte[8192];
+            long n = 0L;
+            for (int k; (k = in.read(buffer)) != -1; ) {
+                for (int i = 0; i < k; ++i) {
+                    if (buffer[i] != PatternStream.pattern(n + i)) {
+                        fail("Streamed wal data not matched at " + (n + i));
+                    }
+                }
+                n += k;
+            }
+            equals(length, n, "streamed wal length");
+        } catch (IOException e) {
+            throw new AssertionError("Read streamed wal failed", e);
+        }
+
+        final Wal wal = waler.get(lsn);
+        equals(length, wal.getData().length, "streamed wal length");
+        equals("commit;", waler.next(waler.next(waler.first())).toString(), "next of streamed wal");
+        int count = 0;
+        try (WalIterator it = waler.iterator()) {
+            while (it.hasNext()) {
+                asserts(it.next() != null);
+                ++count;
+            }
+        }
+        asserts(count >= 3, "wal count " + count);
+    }
+
+}
@@ -0,0 +1,119 @@
+/**
+ * The MIT License (MIT)
+ * <p>
+ * Copyright (c) 2020 little-pan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package org.walog;
+
+import org.walog.internal.NioWaler;
+import org.walog.util.WalFileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/** Test the resume from the append tail state.
+ *
+ * @author little-pan
+ * @since 2026-10-16
+ */
+public class TailStateTest extends AbstractAppendTest {
+
+    public static void main(String[] args) {
+        for (int i = 0; i < iterates; ++i) {
+            new TailStateTest(i).test();
+        }
+        completed = true;
+    }
+
+    public TailStateTest(int iterate) {
+        super(iterate);
+    }
+
+    @Override
+    protected void doTest() {
+        tailStateAppend(false);
+        tailStateAppend(true);
+    }
+
+    /** Resume from the tail state after the file lock released by the sync in flushUnlock
+     * mode, and recover if the tail state disagrees with the last file.
+     */
+    protected void tailStateAppend(boolean mmap) {
+        final AppendOptions options = AppendOptions.builder()
+                .flushUnlock(true).mmap(mmap).tailState(true).build();
+        final File dir = getDir();
+        final int n = 100;
+
+        try (final NioWaler waler = (NioWaler) WalerFactory.open(dir, options)) {
+            for (int i = 0; i < n; ++i) {
+                final Wal wal = waler.append("tail: i=" + i);
+                waler.sync();
+                equals(wal.getLsn(), waler.last().getLsn(), "Last wal lsn not matched");
+                equals("tail: i=" + i, waler.last() + "", "Last wal data not matched");
+            }
+            equals(1L, waler.getRecoveries(), "Recoveries not matched");
+        }
+        // Resume after reopen
+        try (final NioWaler waler = (NioWaler) WalerFactory.open(dir, options)) {
+            equals("tail: i=" + (n - 1), waler.last() + "", "Last wal data not matched");
+            equals(0L, waler.getRecoveries(), "Recoveries not matched");
+        }
+
+        // Disagree: the last wal partial
+        final File file = WalFileUtils.lastFile(dir);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 1);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        try (final NioWaler waler = (NioWaler) WalerFactory.open(dir, options)) {
+            equals("tail: i=" + (n - 2), waler.last() + "", "Last wal data not matched");
+            equals(1L, waler.getRecoveries(), "Recoveries not matched");
+            waler.append("tail: i=" + (n - 1));
+            waler.sync();
+        }
+        // Disagree: the tail state corrupted
+        final File stateFile = new File(dir, "append.state");
+        try (RandomAccessFile raf = new RandomAccessFile(stateFile, "rw")) {
+            raf.seek(12);
+            raf.write(raf.read() + 1);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        try (final NioWaler waler = (NioWaler) WalerFactory.open(dir, options)) {
+            equals("tail: i=" + (n - 1), waler.last() + "", "Last wal data not matched");
+            equals(1L, waler.getRecoveries(), "Recoveries not matched");
+            int i = 0;
+            try (WalIterator it = waler.iterator()) {
+                while (it.hasNext()) {
+                    equals("tail: i=" + i++, it.next() + "", "Wal data not matched");
+                }
+            }
+            equals(n, i, "Wal count");
+        }
+
+        reset();
+    }
+
+}